@@ -0,0 +1,89 @@
+package ru.geobot.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ru.geobot.AWTGraphics;
+import ru.geobot.EntryPointCallback;
+import ru.geobot.game.GeobotEntryPoint;
+import ru.geobot.game.caves.Cave1Game;
+import ru.geobot.graphics.BatchingGraphics;
+import ru.geobot.graphics.Rectangle;
+import ru.geobot.resources.ResourceLoader;
+import ru.geobot.resources.ResourceReader;
+
+/**
+ * <p>Measures a single simulation step and a single frame of the first cave. The game is recreated on every
+ * iteration, so each iteration observes the same portion of the scene's life.</p>
+ *
+ * @author Alexey Andreev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class Cave1Benchmark {
+    private static final int STEP = 17;
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private GeobotEntryPoint entryPoint;
+    private long time;
+    private BufferedImage frameBuffer;
+    private BatchingGraphics batchingGraphics = new BatchingGraphics();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        entryPoint = new GeobotEntryPoint();
+        entryPoint.setGame(new Cave1Game(entryPoint));
+        entryPoint.setResourceReader(new ResourceReader() {
+            @Override public <T> T getResourceSet(Class<T> resourceSetType) {
+                return ResourceLoader.load(resourceSetType);
+            }
+        });
+        entryPoint.start(new EntryPointCallback() {
+            @Override public void stop() {
+            }
+        });
+        entryPoint.resize(WIDTH, HEIGHT);
+        frameBuffer = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        time = 0;
+        // Let the fade-in finish so that the paint benchmark draws the scene itself
+        for (int i = 0; i < 120; ++i) {
+            time += STEP;
+            entryPoint.idle(time);
+        }
+    }
+
+    @Benchmark
+    public int step() {
+        time += STEP;
+        return entryPoint.idle(time);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        Graphics2D awtGraphics = frameBuffer.createGraphics();
+        awtGraphics.setColor(Color.black);
+        awtGraphics.fillRect(0, 0, WIDTH, HEIGHT);
+        entryPoint.paint(new AWTGraphics(awtGraphics, new Rectangle(0, 0, WIDTH, HEIGHT)));
+        awtGraphics.dispose();
+        return frameBuffer;
+    }
+
+    @Benchmark
+    public BufferedImage paintBatched() {
+        Graphics2D awtGraphics = frameBuffer.createGraphics();
+        awtGraphics.setColor(Color.black);
+        awtGraphics.fillRect(0, 0, WIDTH, HEIGHT);
+        AWTGraphics graphics = new AWTGraphics(awtGraphics, new Rectangle(0, 0, WIDTH, HEIGHT));
+        batchingGraphics.begin(graphics);
+        entryPoint.paint(batchingGraphics);
+        batchingGraphics.flush(graphics);
+        awtGraphics.dispose();
+        return frameBuffer;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.geobot.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import ru.geobot.game.caves.StoneWallResources;
+import ru.geobot.util.Vertex;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+final class Outlines {
+    private Outlines() {
+    }
+
+    public static List<List<Vertex>> readStone(String name) {
+        String path = "stones/" + name + ".txt";
+        try (InputStream input = StoneWallResources.class.getResourceAsStream(path)) {
+            if (input == null) {
+                throw new IllegalArgumentException("Resource not found: " + path);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+            List<List<Vertex>> polygons = new ArrayList<>();
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = StringUtils.split(line, ' ');
+                List<Vertex> polygon = new ArrayList<>();
+                for (int i = 0; i < parts.length; i += 2) {
+                    polygon.add(new Vertex(Integer.parseInt(parts[i].trim()), Integer.parseInt(parts[i + 1].trim())));
+                }
+                if (polygon.size() >= 3) {
+                    polygons.add(polygon);
+                }
+            }
+            return polygons;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
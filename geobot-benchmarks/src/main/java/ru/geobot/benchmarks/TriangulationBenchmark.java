@@ -0,0 +1,51 @@
+package ru.geobot.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.geobot.util.DecompositionMode;
+import ru.geobot.util.GeometryUtils;
+import ru.geobot.util.Vertex;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriangulationBenchmark {
+    @Param({ "stone01", "stone16", "stone30", "stone45", "stone61", "zaval" })
+    public String stone;
+    private List<List<Vertex>> polygons;
+
+    @Setup
+    public void setup() {
+        polygons = Outlines.readStone(stone);
+    }
+
+    @Benchmark
+    public void triangulate(Blackhole blackhole) {
+        for (List<Vertex> polygon : polygons) {
+            blackhole.consume(GeometryUtils.triangulate(polygon));
+        }
+    }
+
+    @Benchmark
+    public void triangulateOptimally(Blackhole blackhole) {
+        for (List<Vertex> polygon : polygons) {
+            blackhole.consume(GeometryUtils.triangulate(polygon, DecompositionMode.OPTIMAL));
+        }
+    }
+
+    @Benchmark
+    public void triangulateByEarClipping(Blackhole blackhole) {
+        for (List<Vertex> polygon : polygons) {
+            blackhole.consume(GeometryUtils.triangulateByEarClipping(polygon));
+        }
+    }
+}
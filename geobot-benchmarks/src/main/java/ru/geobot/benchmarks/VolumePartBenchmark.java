@@ -0,0 +1,66 @@
+package ru.geobot.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Transform;
+import org.jbox2d.common.Vec2;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.geobot.game.objects.VolumePartCalculator;
+import ru.geobot.util.GeometryUtils;
+import ru.geobot.util.Vertex;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumePartBenchmark {
+    @Param({ "0.25", "0.5", "0.75" })
+    public float level;
+    private PolygonShape[] shapes;
+    private Transform transform;
+    private float threshold;
+
+    @Setup
+    public void setup() {
+        List<PolygonShape> shapeList = new ArrayList<>();
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (List<Vertex> polygon : Outlines.readStone("zaval")) {
+            for (List<Vertex> piece : GeometryUtils.triangulate(polygon)) {
+                if (GeometryUtils.getOrientation(piece) < 0) {
+                    Collections.reverse(piece);
+                }
+                Vec2[] vertices = new Vec2[piece.size()];
+                for (int i = 0; i < vertices.length; ++i) {
+                    vertices[i] = new Vec2(piece.get(i).x * 0.01f, piece.get(i).y * 0.01f);
+                    minY = Math.min(minY, vertices[i].y);
+                    maxY = Math.max(maxY, vertices[i].y);
+                }
+                PolygonShape shape = new PolygonShape();
+                shape.set(vertices, vertices.length);
+                shapeList.add(shape);
+            }
+        }
+        shapes = shapeList.toArray(new PolygonShape[shapeList.size()]);
+        transform = new Transform();
+        transform.set(new Vec2(0, 0), 0.3f);
+        threshold = minY + (maxY - minY) * level;
+    }
+
+    @Benchmark
+    public void calculate(Blackhole blackhole) {
+        for (PolygonShape shape : shapes) {
+            blackhole.consume(VolumePartCalculator.calculate(shape, transform, threshold));
+        }
+    }
+}
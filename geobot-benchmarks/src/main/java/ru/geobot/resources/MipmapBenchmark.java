@@ -0,0 +1,56 @@
+package ru.geobot.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ru.geobot.game.caves.StoneWallResources;
+import ru.geobot.game.objects.ObjectResources;
+
+/**
+ * <p>Lives in the <code>ru.geobot.resources</code> package to reach the package-private image factory of
+ * {@link ResourceLoader}. With <code>cached</code> set, images are read from a disk cache in a temporary
+ * directory, which is filled during warmup.</p>
+ *
+ * @author Alexey Andreev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MipmapBenchmark {
+    @Param({ "false", "true" })
+    public boolean cached;
+    private File cacheDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (cached) {
+            cacheDirectory = Files.createTempDirectory("geobot-cache").toFile();
+        }
+        ResourceLoader.setCacheDirectory(cacheDirectory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (cacheDirectory != null) {
+            for (File file : cacheDirectory.listFiles()) {
+                file.delete();
+            }
+            cacheDirectory.delete();
+        }
+    }
+
+    @Benchmark
+    public Image smallImage() {
+        return ResourceLoader.createImage(StoneWallResources.class, "stones/stone01.png");
+    }
+
+    @Benchmark
+    public Image mediumImage() {
+        return ResourceLoader.createImage(ObjectResources.class, "bucket1.png");
+    }
+}
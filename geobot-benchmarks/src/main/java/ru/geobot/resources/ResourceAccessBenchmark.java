@@ -0,0 +1,41 @@
+package ru.geobot.resources;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ru.geobot.game.objects.CraneResources;
+
+/**
+ * <p>Compares calls to a resource set implemented by a generated class with calls to the same resource set
+ * implemented by a {@link java.lang.reflect.Proxy}. Resources are never drawn, so they are left empty.</p>
+ *
+ * @author Alexey Andreev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceAccessBenchmark {
+    private CraneResources generated;
+    private CraneResources proxy;
+
+    @Setup
+    public void setUp() {
+        Method[] methods = CraneResources.class.getMethods();
+        Object[] resources = new Object[methods.length];
+        generated = (CraneResources)ResourceSetGenerator.create(CraneResources.class, methods, resources);
+        proxy = (CraneResources)ResourceLoader.createProxy(CraneResources.class, methods, resources);
+    }
+
+    @Benchmark
+    public Object generatedAccess() {
+        return generated.crane();
+    }
+
+    @Benchmark
+    public Object proxyAccess() {
+        return proxy.crane();
+    }
+}
@@ -3,108 +3,102 @@ package ru.geobot;
 import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.LinkedList;
-import ru.geobot.graphics.AffineTransform;
+import ru.geobot.graphics.AbstractGraphics;
 import ru.geobot.graphics.Color;
-import ru.geobot.graphics.Graphics;
+import ru.geobot.graphics.Layer;
 import ru.geobot.graphics.Rectangle;
 
 /**
+ * <p>Reuses AWT objects, so that painting does not allocate anything once colors and stroke widths used
+ * by a scene are cached.</p>
  *
  * @author Alexey Andreev
  */
-public class AWTGraphics implements Graphics {
+public class AWTGraphics extends AbstractGraphics {
+    private static final java.awt.geom.AffineTransform IDENTITY = new java.awt.geom.AffineTransform();
+    private static final int COLOR_CACHE_SIZE = 64;
+    private static final int STROKE_CACHE_SIZE = 16;
     private Graphics2D innerGraphics;
-    private Deque<AffineTransform> transformStack = new LinkedList<>();
-    private java.awt.geom.Path2D.Float currentPath;
+    private java.awt.geom.AffineTransform currentTransform;
+    private Path2D.Float currentPath = new Path2D.Float();
+    private boolean drawingPath;
     private Deque<Shape> clipStack = new ArrayDeque<>();
+    private java.awt.Color[] colorCache = new java.awt.Color[COLOR_CACHE_SIZE];
+    private BasicStroke[] strokeCache = new BasicStroke[STROKE_CACHE_SIZE];
+    private Rectangle2D.Float rectangle = new Rectangle2D.Float();
+    private Ellipse2D.Float ellipse = new Ellipse2D.Float();
+    private Arc2D.Float arc = new Arc2D.Float(Arc2D.OPEN);
+    private java.awt.geom.AffineTransform imageTransform = new java.awt.geom.AffineTransform();
+    private java.awt.Rectangle clipBounds = new java.awt.Rectangle();
 
     public AWTGraphics(Graphics2D innerGraphics, Rectangle clipRectangle) {
         this.innerGraphics = innerGraphics;
         innerGraphics.clip(new Rectangle2D.Float(clipRectangle.x, clipRectangle.y,
                 clipRectangle.width, clipRectangle.height));
+        currentTransform = innerGraphics.getTransform();
+        transform.a = (float)currentTransform.getScaleX();
+        transform.b = (float)currentTransform.getShearY();
+        transform.c = (float)currentTransform.getShearX();
+        transform.d = (float)currentTransform.getScaleY();
+        transform.e = (float)currentTransform.getTranslateX();
+        transform.f = (float)currentTransform.getTranslateY();
     }
 
     @Override
     public void setColor(Color color) {
-        innerGraphics.setColor(new java.awt.Color(color.r, color.g, color.b, color.a));
+        int argb = (color.a << 24) | (color.r << 16) | (color.g << 8) | color.b;
+        int index = (argb ^ (argb >>> 7) ^ (argb >>> 19)) & (COLOR_CACHE_SIZE - 1);
+        java.awt.Color awtColor = colorCache[index];
+        if (awtColor == null || awtColor.getRGB() != argb) {
+            awtColor = new java.awt.Color(color.r, color.g, color.b, color.a);
+            colorCache[index] = awtColor;
+        }
+        innerGraphics.setColor(awtColor);
     }
 
     @Override
     public void setStrokeWidth(float width) {
-        innerGraphics.setStroke(new BasicStroke(width));
-    }
-
-    @Override
-    public void setTransform(AffineTransform transform) {
-        innerGraphics.setTransform(new java.awt.geom.AffineTransform(transform.a, transform.b,
-                transform.c, transform.d, transform.e, transform.f));
-    }
-
-    @Override
-    public AffineTransform getTransform() {
-        java.awt.geom.AffineTransform innerTransform = innerGraphics.getTransform();
-        AffineTransform transform = new AffineTransform();
-        transform.a = (float)innerTransform.getScaleX();
-        transform.b = (float)innerTransform.getShearX();
-        transform.c = (float)innerTransform.getShearY();
-        transform.d = (float)innerTransform.getScaleY();
-        transform.e = (float)innerTransform.getTranslateX();
-        transform.f = (float)innerTransform.getTranslateY();
-        return transform;
-    }
-
-    @Override
-    public void scale(float x, float y) {
-        innerGraphics.scale(x, y);
-    }
-
-    @Override
-    public void translate(float x, float y) {
-        innerGraphics.translate(x, y);
-    }
-
-    @Override
-    public void rotate(float angle) {
-        innerGraphics.rotate(angle);
-    }
-
-    @Override
-    public void transform(AffineTransform transform) {
-        AffineTransform currentTransform = getTransform();
-        currentTransform.transform(transform);
-        setTransform(currentTransform);
-    }
-
-    @Override
-    public void pushTransform() {
-        transformStack.push(getTransform());
+        int bits = Float.floatToIntBits(width);
+        int index = (bits ^ (bits >>> 11) ^ (bits >>> 17)) & (STROKE_CACHE_SIZE - 1);
+        BasicStroke stroke = strokeCache[index];
+        if (stroke == null || stroke.getLineWidth() != width) {
+            stroke = new BasicStroke(width);
+            strokeCache[index] = stroke;
+        }
+        innerGraphics.setStroke(stroke);
     }
 
     @Override
-    public void popTransform() {
-        setTransform(transformStack.pop());
+    protected void transformChanged() {
+        currentTransform.setTransform(transform.a, transform.b, transform.c, transform.d, transform.e, transform.f);
+        innerGraphics.setTransform(currentTransform);
     }
 
     @Override
     public void fillRectangle(float x, float y, float w, float h) {
-        innerGraphics.fill(new java.awt.geom.Rectangle2D.Float(x, y, w, h));
+        rectangle.setRect(x, y, w, h);
+        innerGraphics.fill(rectangle);
     }
 
     @Override
     public void moveTo(float x, float y) {
-        if (currentPath == null) {
-            currentPath = new java.awt.geom.Path2D.Float();
+        if (!drawingPath) {
+            currentPath.reset();
+            drawingPath = true;
         }
         currentPath.moveTo(x, y);
     }
 
     @Override
     public void lineTo(float x, float y) {
-        if (currentPath == null) {
+        if (!drawingPath) {
             throw new IllegalStateException("Not drawing a path");
         }
         currentPath.lineTo(x, y);
@@ -112,7 +106,7 @@ public class AWTGraphics implements Graphics {
 
     @Override
     public void bezierCurveTo(float cp1x, float cp1y, float cp2x, float cp2y, float x, float y) {
-        if (currentPath == null) {
+        if (!drawingPath) {
             throw new IllegalStateException("Not drawing a path");
         }
         currentPath.curveTo(cp1x, cp1y, cp2x, cp2y, x, y);
@@ -120,7 +114,7 @@ public class AWTGraphics implements Graphics {
 
     @Override
     public void quadraticCurveTo(float cpx, float cpy, float x, float y) {
-        if (currentPath == null) {
+        if (!drawingPath) {
             throw new IllegalStateException("Not drawing a path");
         }
         currentPath.quadTo(cpx, cpy, x, y);
@@ -128,38 +122,61 @@ public class AWTGraphics implements Graphics {
 
     @Override
     public void stroke() {
-        if (currentPath == null) {
+        if (!drawingPath) {
             throw new IllegalStateException("Not drawing a path");
         }
         innerGraphics.draw(currentPath);
-        currentPath = null;
+        drawingPath = false;
     }
 
     @Override
     public void fill() {
-        if (currentPath == null) {
+        if (!drawingPath) {
             throw new IllegalStateException("Not drawing a path");
         }
         innerGraphics.fill(currentPath);
-        currentPath = null;
+        drawingPath = false;
     }
 
     @Override
     public void drawArc(float x, float y, float w, float h, float startAngle, float endAngle) {
         startAngle *= 180 / Math.PI;
         endAngle *= 180 / Math.PI;
-        innerGraphics.draw(new java.awt.geom.Arc2D.Float(x, y, w, h, startAngle, endAngle,
-                java.awt.geom.Arc2D.OPEN));
+        arc.setArc(x, y, w, h, startAngle, endAngle, Arc2D.OPEN);
+        innerGraphics.draw(arc);
     }
 
     @Override
     public void drawEllipse(float x, float y, float w, float h) {
-        innerGraphics.draw(new java.awt.geom.Ellipse2D.Float(x, y, w, h));
+        ellipse.setFrame(x, y, w, h);
+        innerGraphics.draw(ellipse);
     }
 
     @Override
     public void fillEllipse(float x, float y, float w, float h) {
-        innerGraphics.fill(new java.awt.geom.Ellipse2D.Float(x, y, w, h));
+        ellipse.setFrame(x, y, w, h);
+        innerGraphics.fill(ellipse);
+    }
+
+    @Override
+    public Layer createLayer(int width, int height, boolean opaque) {
+        return new AWTLayer(width, height, opaque, innerGraphics.getRenderingHints());
+    }
+
+    /**
+     * <p>Draws an image with the given transform applied on top of the transform of the inner graphics.</p>
+     */
+    public void drawImage(BufferedImage image, float a, float b, float c, float d, float e, float f) {
+        imageTransform.setTransform(a, b, c, d, e, f);
+        innerGraphics.drawRenderedImage(image, imageTransform);
+    }
+
+    /**
+     * <p>Gets bounds of the clip of the inner graphics in its user space. The rectangle belongs to this graphics
+     * and is overwritten by the next call.</p>
+     */
+    public java.awt.Rectangle getInnerClipBounds() {
+        return innerGraphics.getClipBounds(clipBounds);
     }
 
     public Graphics2D getInnerGraphics() {
@@ -168,18 +185,17 @@ public class AWTGraphics implements Graphics {
 
     @Override
     public void clip(Rectangle rectangle) {
-        java.awt.geom.AffineTransform oldTransform = innerGraphics.getTransform();
-        innerGraphics.setTransform(new java.awt.geom.AffineTransform());
+        innerGraphics.setTransform(IDENTITY);
         clipStack.push(innerGraphics.getClip());
-        innerGraphics.setTransform(oldTransform);
-        innerGraphics.clip(new Rectangle2D.Float(rectangle.x, rectangle.y, rectangle.width, rectangle.height));
+        innerGraphics.setTransform(currentTransform);
+        this.rectangle.setRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+        innerGraphics.clip(this.rectangle);
     }
 
     @Override
     public void popClip() {
-        java.awt.geom.AffineTransform oldTransform = innerGraphics.getTransform();
-        innerGraphics.setTransform(new java.awt.geom.AffineTransform());
+        innerGraphics.setTransform(IDENTITY);
         innerGraphics.setClip(clipStack.pop());
-        innerGraphics.setTransform(oldTransform);
+        innerGraphics.setTransform(currentTransform);
     }
 }
@@ -0,0 +1,82 @@
+package ru.geobot;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import ru.geobot.graphics.BatchingGraphics;
+import ru.geobot.graphics.Graphics;
+import ru.geobot.graphics.Layer;
+import ru.geobot.graphics.Rectangle;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+class AWTLayer implements Layer {
+    private static final java.awt.geom.AffineTransform IDENTITY = new java.awt.geom.AffineTransform();
+    private BufferedImage image;
+    private RenderingHints renderingHints;
+    private Graphics2D graphics;
+
+    public AWTLayer(int width, int height, boolean opaque, RenderingHints renderingHints) {
+        image = new BufferedImage(Math.max(1, width), Math.max(1, height),
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        this.renderingHints = renderingHints;
+    }
+
+    @Override
+    public Graphics begin() {
+        if (graphics != null) {
+            throw new IllegalStateException("Layer is already being painted");
+        }
+        graphics = image.createGraphics();
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setComposite(AlphaComposite.SrcOver);
+        graphics.setRenderingHints(renderingHints);
+        return new AWTGraphics(graphics, new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    @Override
+    public void end() {
+        if (graphics == null) {
+            throw new IllegalStateException("Layer is not being painted");
+        }
+        graphics.dispose();
+        graphics = null;
+    }
+
+    @Override
+    public void draw(Graphics graphics) {
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, 1);
+            return;
+        }
+        ((AWTGraphics)graphics).getInnerGraphics().drawImage(image, IDENTITY, null);
+    }
+
+    @Override
+    public void draw(Graphics graphics, float alpha) {
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, alpha);
+            return;
+        }
+        Graphics2D innerGraphics = ((AWTGraphics)graphics).getInnerGraphics();
+        Composite oldComposite = innerGraphics.getComposite();
+        innerGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        innerGraphics.drawImage(image, IDENTITY, null);
+        innerGraphics.setComposite(oldComposite);
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+}
@@ -0,0 +1,19 @@
+package ru.geobot;
+
+import ru.geobot.graphics.Rectangle;
+
+/**
+ * <p>An entry point that knows which part of the screen has changed since the previous frame, so that runners
+ * can repaint only that part.</p>
+ *
+ * @author Alexey Andreev
+ */
+public interface DirtyRegionProvider {
+    /**
+     * <p>Computes the part of the screen that has changed since the previous call, in pixels. Returns
+     * <code>false</code> if the whole screen has to be repainted. Otherwise fills the given rectangle, which is
+     * empty when nothing has changed. Runners call this method right before painting a frame, without
+     * letting the entry point change in between.</p>
+     */
+    boolean getDirtyRegion(Rectangle region);
+}
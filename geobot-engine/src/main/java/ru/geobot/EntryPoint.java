@@ -18,7 +18,11 @@ public interface EntryPoint {
 
     void keyUp(Key key);
 
-    boolean idle(long time);
+    /**
+     * <p>Advances the entry point to the given time. Returns the number of physics steps taken, or zero if
+     * nothing was stepped.</p>
+     */
+    int idle(long time);
 
     void resize(int width, int height);
 
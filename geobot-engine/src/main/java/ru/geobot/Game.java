@@ -2,22 +2,31 @@ package ru.geobot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import org.jbox2d.callbacks.ContactImpulse;
 import org.jbox2d.callbacks.ContactListener;
+import org.jbox2d.callbacks.QueryCallback;
+import org.jbox2d.collision.AABB;
 import org.jbox2d.collision.Manifold;
 import org.jbox2d.collision.shapes.CircleShape;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Transform;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyType;
 import org.jbox2d.dynamics.Fixture;
 import org.jbox2d.dynamics.World;
 import org.jbox2d.dynamics.contacts.Contact;
 import ru.geobot.graphics.AffineTransform;
 import ru.geobot.graphics.Color;
 import ru.geobot.graphics.Graphics;
+import ru.geobot.graphics.Layer;
 import ru.geobot.graphics.Rectangle;
 import ru.geobot.resources.ResourceReader;
 
@@ -25,16 +34,59 @@ import ru.geobot.resources.ResourceReader;
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
-public class Game implements EntryPoint {
+public class Game implements EntryPoint, DirtyRegionProvider {
+    private static final int ADAPTATION_WINDOW = 30;
+    private static final int MIN_VELOCITY_ITERATIONS = 8;
+    private static final int MIN_POSITION_ITERATIONS = 3;
+    private static final Color BACKGROUND_COLOR = Color.gray();
+    private static final Color OUTLINE_COLOR = Color.red();
+    private static final int MAX_LAYER_SIZE = 4096;
+    private static final int BODY_STATE_SIZE = 7;
     private World world;
     List<GameObject> objects = new ArrayList<>();
+    private List<GameObject> zOrderedObjects = new ArrayList<>();
+    private GameObject[] paintOrder;
+    private GameObject[] hitTestOrder;
+    private GameObject[] tickingObjects;
+    private long objectSequence;
+    private int batchDepth;
+    private long batchSequence;
+    private List<GameObject> batchObjects = new ArrayList<>();
+    private Map<Body, GameObject> hitTestBodies = new HashMap<>();
+    private float hitTestMargin;
+    private int hitTestStamp;
+    private boolean hitTestValid;
+    private AABB hitTestArea = new AABB();
+    private QueryCallback hitTestCallback = new QueryCallback() {
+        @Override public boolean reportFixture(Fixture fixture) {
+            GameObject object = hitTestBodies.get(fixture.getBody());
+            if (object != null) {
+                object.hitTestStamp = hitTestStamp;
+            }
+            return true;
+        }
+    };
     private List<GameListener> listeners = new ArrayList<>();
     private List<ContactListener> contactListeners = new ArrayList<>();
+    private List<GameTimingListener> timingListeners = new ArrayList<>();
     boolean hasRemovedObjects;
     GameObject objectUnderMouse;
     private long timeSlice = 17;
     private long currentTime;
     private long currentSlicedTime;
+    private long timeShift;
+    private int maxCatchUpSteps = 10;
+    private boolean timeDilated;
+    private long lateSliceCount;
+    private long droppedSliceCount;
+    private int velocityIterations = 25;
+    private int positionIterations = 16;
+    private int currentVelocityIterations = velocityIterations;
+    private int currentPositionIterations = positionIterations;
+    private boolean adaptiveIterations;
+    private float stepBudget = 8;
+    private float adaptationTime;
+    private int adaptationStepCount;
     private float mouseX;
     private float mouseY;
     private float originX;
@@ -47,6 +99,36 @@ public class Game implements EntryPoint {
     float height;
     private ResourceReader resourceReader;
     private static volatile boolean outlinePainted;
+    private boolean interpolated;
+    private WorldSnapshot previousSnapshot;
+    private WorldSnapshot latestSnapshot;
+    private WorldSnapshot paintSnapshot;
+    private long lastIdleWallTime;
+    private Rectangle viewRectangle = new Rectangle(0, 0, 1, 1);
+    private AffineTransform originalTransform = new AffineTransform();
+    private AffineTransform screenTransform = new AffineTransform();
+    private AffineTransform layerTransform = new AffineTransform();
+    private Layer staticLayer;
+    private GameObject[] staticLayerObjects = new GameObject[4];
+    private int staticLayerObjectCount;
+    private float staticLayerScale;
+    private boolean staticLayerValid;
+    private Body[] paintedBodies = new Body[64];
+    private float[] paintedBodyStates = new float[64 * BODY_STATE_SIZE];
+    private int paintedBodyCount;
+    private AABB bodyBounds = new AABB();
+    private AABB fixtureBounds = new AABB();
+    private boolean dirtyRegionValid;
+    private float dirtyMinX = Float.POSITIVE_INFINITY;
+    private float dirtyMinY = Float.POSITIVE_INFINITY;
+    private float dirtyMaxX = Float.NEGATIVE_INFINITY;
+    private float dirtyMaxY = Float.NEGATIVE_INFINITY;
+    private float dirtyMargin = 0.25f;
+    private float paintedViewX;
+    private float paintedViewY;
+    private float paintedViewScale;
+    private float paintedWidth;
+    private float paintedHeight;
     private GameObject clickedObject;
 
     public Game() {
@@ -100,6 +182,48 @@ public class Game implements EntryPoint {
         contactListeners.remove(listener);
     }
 
+    public void addTimingListener(GameTimingListener listener) {
+        timingListeners.add(listener);
+    }
+
+    public void removeTimingListener(GameTimingListener listener) {
+        timingListeners.remove(listener);
+    }
+
+    public int getMaxCatchUpSteps() {
+        return maxCatchUpSteps;
+    }
+
+    /**
+     * <p>Sets the maximum number of time slices performed by a single {@link #idle(long)} call. When the game
+     * falls further behind, for example after a long GC pause, the remaining slices are dropped, so that
+     * catching up does not make the next call even later. Zero or negative value means no limit.</p>
+     */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    public boolean isTimeDilated() {
+        return timeDilated;
+    }
+
+    /**
+     * <p>Sets what happens to the slices dropped after exceeding {@link #getMaxCatchUpSteps()}. By default
+     * game time jumps over them, so objects observe a gap in time. A time dilated game instead stops its
+     * clock for the dropped period and continues from where it was.</p>
+     */
+    public void setTimeDilated(boolean timeDilated) {
+        this.timeDilated = timeDilated;
+    }
+
+    public long getLateSliceCount() {
+        return lateSliceCount;
+    }
+
+    public long getDroppedSliceCount() {
+        return droppedSliceCount;
+    }
+
     public static boolean isOutlinePainted() {
         return outlinePainted;
     }
@@ -108,54 +232,325 @@ public class Game implements EntryPoint {
         Game.outlinePainted = outlinePainted;
     }
 
+    public boolean isInterpolated() {
+        return interpolated;
+    }
+
+    /**
+     * <p>Sets whether the game paints bodies at positions interpolated between the two last physics steps
+     * instead of the positions after the last step. This makes motion smooth when frames are painted
+     * independently of physics steps, at the cost of one time slice of latency.</p>
+     */
+    public void setInterpolated(boolean interpolated) {
+        this.interpolated = interpolated;
+        if (!interpolated) {
+            previousSnapshot = null;
+            latestSnapshot = null;
+        }
+    }
+
     void cleanRemovedObjects() {
         if (!hasRemovedObjects) {
             return;
         }
         hasRemovedObjects = false;
-        for (int i = 0; i < objects.size(); ++i) {
-            if (objects.get(i).game != this) {
-                objects.remove(i);
-                --i;
+        removeDisposed(objects);
+        removeDisposed(zOrderedObjects);
+        for (Iterator<GameObject> iter = hitTestBodies.values().iterator(); iter.hasNext();) {
+            if (iter.next().game != this) {
+                iter.remove();
+            }
+        }
+        paintOrder = null;
+        hitTestOrder = null;
+        tickingObjects = null;
+        hitTestValid = false;
+    }
+
+    private void removeDisposed(List<GameObject> list) {
+        int j = 0;
+        for (int i = 0; i < list.size(); ++i) {
+            GameObject object = list.get(i);
+            if (object.game == this) {
+                list.set(j++, object);
+            }
+        }
+        list.subList(j, list.size()).clear();
+    }
+
+    /**
+     * <p>Starts a batch of new objects. Objects created until the matching {@link #endBatch()} are put into
+     * paint and hit test order all at once when the batch ends, and are neither painted nor hit tested before.
+     * Batches may be nested, in which case the outermost one counts.</p>
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batchSequence = objectSequence;
+        }
+    }
+
+    public void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("There is no batch to end");
+        }
+        if (--batchDepth > 0) {
+            return;
+        }
+        cleanRemovedObjects();
+        removeDisposed(batchObjects);
+        Collections.sort(batchObjects, new Comparator<GameObject>() {
+            @Override public int compare(GameObject o1, GameObject o2) {
+                if (o1.zIndex != o2.zIndex) {
+                    return Integer.compare(o1.zIndex, o2.zIndex);
+                }
+                return Long.compare(o1.sequence, o2.sequence);
+            }
+        });
+        List<GameObject> merged = new ArrayList<>(zOrderedObjects.size() + batchObjects.size());
+        int i = 0;
+        int j = 0;
+        while (i < zOrderedObjects.size() && j < batchObjects.size()) {
+            if (zOrderedObjects.get(i).zIndex <= batchObjects.get(j).zIndex) {
+                merged.add(zOrderedObjects.get(i++));
+            } else {
+                merged.add(batchObjects.get(j++));
+            }
+        }
+        merged.addAll(zOrderedObjects.subList(i, zOrderedObjects.size()));
+        merged.addAll(batchObjects.subList(j, batchObjects.size()));
+        zOrderedObjects = merged;
+        batchObjects.clear();
+        paintOrder = null;
+        hitTestOrder = null;
+        tickingObjects = null;
+        hitTestValid = false;
+        dirtyRegionValid = false;
+    }
+
+    void addObject(GameObject object) {
+        if (batchDepth > 0) {
+            object.sequence = objectSequence++;
+            objects.add(object);
+            batchObjects.add(object);
+            return;
+        }
+        cleanRemovedObjects();
+        object.sequence = objectSequence++;
+        objects.add(object);
+        zOrderedObjects.add(findZOrderPosition(object.zIndex, object.sequence), object);
+        paintOrder = null;
+        hitTestOrder = null;
+        tickingObjects = null;
+        hitTestValid = false;
+        dirtyRegionValid = false;
+    }
+
+    void changeZIndex(GameObject object, int zIndex) {
+        if (batchDepth > 0 && object.sequence >= batchSequence) {
+            object.zIndex = zIndex;
+            return;
+        }
+        zOrderedObjects.remove(findZOrderPosition(object.zIndex, object.sequence));
+        object.zIndex = zIndex;
+        zOrderedObjects.add(findZOrderPosition(object.zIndex, object.sequence), object);
+        paintOrder = null;
+        hitTestOrder = null;
+        hitTestValid = false;
+        dirtyRegionValid = false;
+    }
+
+    void tickingChanged() {
+        tickingObjects = null;
+    }
+
+    private GameObject[] getTickingObjects() {
+        if (tickingObjects == null) {
+            int count = 0;
+            for (GameObject object : objects) {
+                if (object.ticking && object.game == this) {
+                    ++count;
+                }
+            }
+            tickingObjects = new GameObject[count];
+            int index = 0;
+            for (GameObject object : objects) {
+                if (object.ticking && object.game == this) {
+                    tickingObjects[index++] = object;
+                }
+            }
+        }
+        return tickingObjects;
+    }
+
+    void addHitTestBody(GameObject object, Body body, float margin) {
+        if (hitTestBodies.put(body, object) == null) {
+            ++object.hitTestBodyCount;
+        }
+        hitTestMargin = Math.max(hitTestMargin, margin);
+        hitTestValid = false;
+    }
+
+    void removeHitTestBody(GameObject object, Body body) {
+        if (hitTestBodies.get(body) == object) {
+            hitTestBodies.remove(body);
+            --object.hitTestBodyCount;
+        }
+        hitTestValid = false;
+    }
+
+    /**
+     * <p>Forces the object under mouse to be looked up again on the next slice. The lookup is performed
+     * automatically when the mouse moves, objects are added, removed or reordered, or some bodies are awake.
+     * Objects whose {@link GameObject#hasPoint(float, float)} depends on anything else should call this method
+     * when their state changes.</p>
+     */
+    public void invalidateHitTest() {
+        hitTestValid = false;
+    }
+
+    private boolean hasMovingBodies() {
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (body.getType() != BodyType.STATIC && body.isAwake()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Marks objects whose registered bodies are near the mouse with the new hit test stamp, so that
+     * the precise test is performed only on them and on objects without registered bodies.</p>
+     */
+    private void findHitTestCandidates() {
+        ++hitTestStamp;
+        if (hitTestBodies.isEmpty()) {
+            return;
+        }
+        hitTestArea.lowerBound.set(mouseX - hitTestMargin, mouseY - hitTestMargin);
+        hitTestArea.upperBound.set(mouseX + hitTestMargin, mouseY + hitTestMargin);
+        world.queryAABB(hitTestCallback, hitTestArea);
+    }
+
+    private boolean isHitTestCandidate(GameObject object) {
+        return object.game == this && (object.hitTestBodyCount == 0 || object.hitTestStamp == hitTestStamp);
+    }
+
+    private int findZOrderPosition(int zIndex, long sequence) {
+        int low = 0;
+        int high = zOrderedObjects.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            GameObject object = zOrderedObjects.get(mid);
+            if (object.zIndex < zIndex || object.zIndex == zIndex && object.sequence < sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
+        return low;
     }
 
-    private boolean actUntil(long time) {
+    private GameObject[] getPaintOrder() {
+        if (paintOrder == null) {
+            paintOrder = zOrderedObjects.toArray(new GameObject[zOrderedObjects.size()]);
+        }
+        return paintOrder;
+    }
+
+    /**
+     * <p>Gets objects from top to bottom. Objects with the same z-index are kept in order of their creation.</p>
+     */
+    private GameObject[] getHitTestOrder() {
+        if (hitTestOrder == null) {
+            hitTestOrder = new GameObject[zOrderedObjects.size()];
+            int index = 0;
+            int groupEnd = zOrderedObjects.size();
+            while (groupEnd > 0) {
+                int zIndex = zOrderedObjects.get(groupEnd - 1).zIndex;
+                int groupStart = groupEnd - 1;
+                while (groupStart > 0 && zOrderedObjects.get(groupStart - 1).zIndex == zIndex) {
+                    --groupStart;
+                }
+                for (int i = groupStart; i < groupEnd; ++i) {
+                    hitTestOrder[index++] = zOrderedObjects.get(i);
+                }
+                groupEnd = groupStart;
+            }
+        }
+        return hitTestOrder;
+    }
+
+    private int actUntil(long time) {
+        lastIdleWallTime = System.currentTimeMillis();
+        time -= timeShift;
         if (time <= this.currentTime) {
-            return false;
+            return 0;
         }
-        boolean acted = false;
+        int steps = 0;
         while (true) {
             long nextTime = currentSlicedTime + timeSlice;
             if (nextTime > time) {
                 break;
             }
+            if (maxCatchUpSteps > 0 && steps == maxCatchUpSteps) {
+                int dropped = (int)((time - currentSlicedTime) / timeSlice);
+                long droppedTime = dropped * timeSlice;
+                if (timeDilated) {
+                    timeShift += droppedTime;
+                    time -= droppedTime;
+                } else {
+                    currentSlicedTime += droppedTime;
+                }
+                droppedSliceCount += dropped;
+                for (GameTimingListener listener : timingListeners) {
+                    listener.slicesDropped(dropped);
+                }
+                break;
+            }
             cleanRemovedObjects();
             world.clearForces();
             updateMouse();
-            acted = true;
-            for (GameObject object : new ArrayList<>(objects)) {
-                object.time(nextTime);
+            ++steps;
+            for (GameObject object : getTickingObjects()) {
+                if (object.game == this && !object.isSleeping()) {
+                    object.time(nextTime);
+                }
             }
             currentSlicedTime = nextTime;
-            world.step(timeSlice / 1000f, 25, 16);
+            if (adaptiveIterations) {
+                long stepStart = System.nanoTime();
+                world.step(timeSlice / 1000f, currentVelocityIterations, currentPositionIterations);
+                adaptIterations((System.nanoTime() - stepStart) / 1000000f);
+            } else {
+                world.step(timeSlice / 1000f, currentVelocityIterations, currentPositionIterations);
+            }
+            if (interpolated) {
+                previousSnapshot = latestSnapshot;
+                latestSnapshot = WorldSnapshot.take(world, currentSlicedTime);
+            } else {
+                previousSnapshot = null;
+                latestSnapshot = null;
+            }
+        }
+        if (steps > 1) {
+            lateSliceCount += steps - 1;
+            for (GameTimingListener listener : timingListeners) {
+                listener.slicesLate(steps - 1);
+            }
         }
         currentTime = time;
-        return acted;
+        return steps;
     }
 
     private void updateMouse() {
-        GameObject[] objectArray = objects.toArray(new GameObject[objects.size()]);
-        Arrays.sort(objectArray, new Comparator<GameObject>() {
-            @Override
-            public int compare(GameObject o1, GameObject o2) {
-                return o2.zIndex - o1.zIndex;
-            }
-        });
+        if (hitTestValid && !hasMovingBodies()) {
+            return;
+        }
+        hitTestValid = true;
+        findHitTestCandidates();
         GameObject selectedObject = null;
-        for (GameObject object : objectArray) {
-            if (object.hasPoint(mouseX, mouseY)) {
+        for (GameObject object : getHitTestOrder()) {
+            if (isHitTestCandidate(object) && object.hasPoint(mouseX, mouseY)) {
                 selectedObject = object;
                 break;
             }
@@ -179,6 +574,109 @@ public class Game implements EntryPoint {
         return timeSlice;
     }
 
+    public void setTimeSlice(long timeSlice) {
+        if (timeSlice <= 0) {
+            throw new IllegalArgumentException("Time slice must be positive: " + timeSlice);
+        }
+        this.timeSlice = timeSlice;
+    }
+
+    public int getVelocityIterations() {
+        return velocityIterations;
+    }
+
+    /**
+     * <p>Sets the number of velocity iterations of the constraint solver. When adaptive iterations are enabled,
+     * this is the upper bound.</p>
+     */
+    public void setVelocityIterations(int velocityIterations) {
+        this.velocityIterations = Math.max(1, velocityIterations);
+        currentVelocityIterations = this.velocityIterations;
+    }
+
+    public int getPositionIterations() {
+        return positionIterations;
+    }
+
+    /**
+     * <p>Sets the number of position iterations of the constraint solver. When adaptive iterations are enabled,
+     * this is the upper bound.</p>
+     */
+    public void setPositionIterations(int positionIterations) {
+        this.positionIterations = Math.max(1, positionIterations);
+        currentPositionIterations = this.positionIterations;
+    }
+
+    public int getCurrentVelocityIterations() {
+        return currentVelocityIterations;
+    }
+
+    public int getCurrentPositionIterations() {
+        return currentPositionIterations;
+    }
+
+    public boolean isAdaptiveIterations() {
+        return adaptiveIterations;
+    }
+
+    /**
+     * <p>Sets whether the game lowers the number of solver iterations when physics steps take longer than
+     * {@link #getStepBudget()} on average, and raises it back up to the configured values when there is enough
+     * headroom. Every change is reported to timing listeners.</p>
+     */
+    public void setAdaptiveIterations(boolean adaptiveIterations) {
+        this.adaptiveIterations = adaptiveIterations;
+        currentVelocityIterations = velocityIterations;
+        currentPositionIterations = positionIterations;
+        adaptationTime = 0;
+        adaptationStepCount = 0;
+    }
+
+    public float getStepBudget() {
+        return stepBudget;
+    }
+
+    /**
+     * <p>Sets the average duration of a single physics step, in milliseconds, that adaptive iterations aim for.</p>
+     */
+    public void setStepBudget(float stepBudget) {
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * <p>Takes the duration of a physics step in milliseconds. Steps are much shorter than a millisecond of
+     * the wall clock, so they are measured with {@link System#nanoTime()}.</p>
+     */
+    private void adaptIterations(float stepTime) {
+        adaptationTime += stepTime;
+        if (++adaptationStepCount < ADAPTATION_WINDOW) {
+            return;
+        }
+        float averageTime = adaptationTime / adaptationStepCount;
+        adaptationTime = 0;
+        adaptationStepCount = 0;
+        int newVelocityIterations = currentVelocityIterations;
+        int newPositionIterations = currentPositionIterations;
+        if (averageTime > stepBudget) {
+            newVelocityIterations = Math.max(Math.min(MIN_VELOCITY_ITERATIONS, velocityIterations),
+                    currentVelocityIterations * 3 / 4);
+            newPositionIterations = Math.max(Math.min(MIN_POSITION_ITERATIONS, positionIterations),
+                    currentPositionIterations * 3 / 4);
+        } else if (averageTime < stepBudget / 2) {
+            newVelocityIterations = Math.min(velocityIterations, currentVelocityIterations + 2);
+            newPositionIterations = Math.min(positionIterations, currentPositionIterations + 1);
+        }
+        if (newVelocityIterations == currentVelocityIterations &&
+                newPositionIterations == currentPositionIterations) {
+            return;
+        }
+        currentVelocityIterations = newVelocityIterations;
+        currentPositionIterations = newPositionIterations;
+        for (GameTimingListener listener : timingListeners) {
+            listener.iterationsChanged(currentVelocityIterations, currentPositionIterations);
+        }
+    }
+
     public float getOriginX() {
         return originX;
     }
@@ -206,6 +704,7 @@ public class Game implements EntryPoint {
         float ty = this.height - y - rect.y;
         mouseX = tx / (scale * naturalScale);
         mouseY = ty / (scale * naturalScale);
+        hitTestValid = false;
         updateMouse();
         for (GameListener listener : listeners) {
             listener.mouseMoved(mouseX, mouseY);
@@ -222,15 +721,10 @@ public class Game implements EntryPoint {
 
     @Override
     public void mouseDown() {
-        GameObject[] objectArray = objects.toArray(new GameObject[objects.size()]);
-        Arrays.sort(objectArray, new Comparator<GameObject>() {
-            @Override public int compare(GameObject o1, GameObject o2) {
-                return o2.zIndex - o1.zIndex;
-            }
-        });
         clickedObject = null;
-        for (GameObject object : objectArray) {
-            if (object.hasPoint(mouseX, mouseY)) {
+        findHitTestCandidates();
+        for (GameObject object : getHitTestOrder()) {
+            if (isHitTestCandidate(object) && object.hasPoint(mouseX, mouseY)) {
                 if (object.click()) {
                     clickedObject = object;
                     break;
@@ -249,7 +743,7 @@ public class Game implements EntryPoint {
     }
 
     @Override
-    public boolean idle(long time) {
+    public int idle(long time) {
         return actUntil(time);
     }
 
@@ -276,59 +770,355 @@ public class Game implements EntryPoint {
     public void paint(Graphics graphics) {
         boolean outlinePainted = Game.outlinePainted;
         Rectangle rect = getViewRectangle();
-        graphics.setColor(Color.gray());
+        graphics.getTransform(screenTransform);
+        graphics.setColor(BACKGROUND_COLOR);
         graphics.fillRectangle(0, 0, width, height);
         graphics.translate(rect.x, height - rect.y);
         graphics.scale(scale * naturalScale, -scale * naturalScale);
 
-        AffineTransform orig = graphics.getTransform();
-        GameObject[] objectArray = objects.toArray(new GameObject[objects.size()]);
-        Arrays.sort(objectArray, new Comparator<GameObject>() {
-            @Override public int compare(GameObject o1, GameObject o2) {
-                return Integer.compare(o1.getZIndex(), o2.getZIndex());
+        AffineTransform orig = originalTransform;
+        graphics.getTransform(orig);
+        WorldSnapshot snapshot = latestSnapshot;
+        WorldSnapshot previous = previousSnapshot;
+        if (snapshot != null && previous != null) {
+            paintSnapshot = snapshot.interpolate(previous, getInterpolationFactor(snapshot, previous));
+        }
+        try {
+            GameObject[] order = getPaintOrder();
+            int first = paintStaticLayer(graphics, order, rect);
+            if (first == 0) {
+                paintBackground(graphics);
             }
-        });
-        paintBackground(graphics);
-        for (GameObject object : objectArray) {
-            object.paint(graphics);
-        }
-        graphics.setTransform(orig);
-
-        if (outlinePainted) {
-            graphics.setStrokeWidth(0.01f);
-            for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
-                Vec2 pos = body.getPosition();
-                graphics.translate(pos.x, pos.y);
-                graphics.rotate(body.getAngle());
-                for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
-                    Shape shape = fixture.getShape();
-                    if (shape instanceof PolygonShape) {
-                        PolygonShape poly = (PolygonShape)fixture.getShape();
-                        Vec2[] vertices = poly.getVertices();
-                        Vec2 v = vertices[poly.getVertexCount() - 1];
-                        graphics.setColor(Color.red());
-                        graphics.moveTo(v.x, v.y);
-                        for (int i = 0; i < poly.getVertexCount(); ++i) {
-                            graphics.lineTo(vertices[i].x, vertices[i].y);
-                        }
-                        graphics.stroke();
-                    } else if (shape instanceof CircleShape) {
-                        CircleShape circle = (CircleShape)shape;
-                        Vec2 v = circle.m_p;
-                        graphics.setColor(Color.red());
-                        graphics.drawEllipse(v.x - circle.m_radius, v.y - circle.m_radius,
-                                2 * circle.m_radius, 2 * circle.m_radius);
-                        Vec2 dir = new Vec2((float)Math.cos(body.getAngle()), (float)Math.sin(body.getAngle()));
-                        dir.mulLocal(circle.m_radius);
-                        graphics.moveTo(v.x, v.y);
-                        graphics.lineTo(v.x + dir.x, v.y + dir.y);
+            for (int i = first; i < order.length; ++i) {
+                GameObject object = order[i];
+                if (object.game == this) {
+                    object.paint(graphics);
+                }
+            }
+            graphics.setTransform(orig);
+
+            if (outlinePainted) {
+                paintOutlines(graphics, orig);
+            }
+        } finally {
+            paintSnapshot = null;
+        }
+    }
+
+    private void paintOutlines(Graphics graphics, AffineTransform orig) {
+        graphics.setStrokeWidth(0.01f);
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            Vec2 pos = getPaintPosition(body);
+            float angle = getPaintAngle(body);
+            graphics.translate(pos.x, pos.y);
+            graphics.rotate(angle);
+            for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+                Shape shape = fixture.getShape();
+                if (shape instanceof PolygonShape) {
+                    PolygonShape poly = (PolygonShape)fixture.getShape();
+                    Vec2[] vertices = poly.getVertices();
+                    Vec2 v = vertices[poly.getVertexCount() - 1];
+                    graphics.setColor(OUTLINE_COLOR);
+                    graphics.moveTo(v.x, v.y);
+                    for (int i = 0; i < poly.getVertexCount(); ++i) {
+                        graphics.lineTo(vertices[i].x, vertices[i].y);
                     }
+                    graphics.stroke();
+                } else if (shape instanceof CircleShape) {
+                    CircleShape circle = (CircleShape)shape;
+                    Vec2 v = circle.m_p;
+                    graphics.setColor(OUTLINE_COLOR);
+                    graphics.drawEllipse(v.x - circle.m_radius, v.y - circle.m_radius,
+                            2 * circle.m_radius, 2 * circle.m_radius);
+                    Vec2 dir = new Vec2((float)Math.cos(angle), (float)Math.sin(angle));
+                    dir.mulLocal(circle.m_radius);
+                    graphics.moveTo(v.x, v.y);
+                    graphics.lineTo(v.x + dir.x, v.y + dir.y);
                 }
-                graphics.setTransform(orig);
             }
+            graphics.setTransform(orig);
+        }
+    }
+
+    /**
+     * <p>Gets the position at which the body is painted in the current frame. When the game is interpolated,
+     * this lies between the positions after the two last physics steps, otherwise it is the position of the
+     * body itself. Bodies are never moved for painting.</p>
+     */
+    Vec2 getPaintPosition(Body body) {
+        WorldSnapshot snapshot = paintSnapshot;
+        int index = snapshot != null ? snapshot.indexOf(body) : -1;
+        return index >= 0 ? new Vec2(snapshot.getX(index), snapshot.getY(index)) : body.getPosition();
+    }
+
+    float getPaintAngle(Body body) {
+        WorldSnapshot snapshot = paintSnapshot;
+        int index = snapshot != null ? snapshot.indexOf(body) : -1;
+        return index >= 0 ? snapshot.getAngle(index) : body.getAngle();
+    }
+
+    Vec2 getPaintWorldPoint(Body body, Vec2 localPoint) {
+        WorldSnapshot snapshot = paintSnapshot;
+        int index = snapshot != null ? snapshot.indexOf(body) : -1;
+        if (index < 0) {
+            return body.getWorldPoint(localPoint);
+        }
+        float angle = snapshot.getAngle(index);
+        float cos = (float)Math.cos(angle);
+        float sin = (float)Math.sin(angle);
+        return new Vec2(snapshot.getX(index) + cos * localPoint.x - sin * localPoint.y,
+                snapshot.getY(index) + sin * localPoint.x + cos * localPoint.y);
+    }
+
+    /**
+     * <p>Draws the opaque layer with the background and static objects lying at the bottom of the paint order,
+     * painting them into it first if needed. Returns the index of the first object that should be painted
+     * directly, so zero means that the layer is not used.</p>
+     */
+    private int paintStaticLayer(Graphics graphics, GameObject[] order, Rectangle rect) {
+        int end = 0;
+        int count = 0;
+        boolean changed = false;
+        for (; end < order.length; ++end) {
+            GameObject object = order[end];
+            if (object.game != this) {
+                continue;
+            }
+            if (!object.staticDrawing) {
+                break;
+            }
+            if (count >= staticLayerObjectCount || staticLayerObjects[count] != object) {
+                changed = true;
+            }
+            ++count;
+        }
+        if (count == 0) {
+            staticLayer = null;
+            staticLayerObjectCount = 0;
+            return 0;
+        }
+        float layerScale = scale * naturalScale;
+        int layerWidth = (int)Math.ceil(worldWidth * layerScale);
+        int layerHeight = (int)Math.ceil(worldHeight * layerScale);
+        if (layerWidth > MAX_LAYER_SIZE || layerHeight > MAX_LAYER_SIZE) {
+            staticLayer = null;
+            return 0;
+        }
+        if (changed || count != staticLayerObjectCount) {
+            if (staticLayerObjects.length < count) {
+                staticLayerObjects = new GameObject[count];
+            }
+            count = 0;
+            for (int i = 0; i < end; ++i) {
+                if (order[i].game == this) {
+                    staticLayerObjects[count++] = order[i];
+                }
+            }
+            staticLayerObjectCount = count;
+            staticLayerValid = false;
+        }
+        if (staticLayer == null || staticLayer.getWidth() != layerWidth || staticLayer.getHeight() != layerHeight) {
+            staticLayer = graphics.createLayer(layerWidth, layerHeight, true);
+            if (staticLayer == null) {
+                return 0;
+            }
+            staticLayerValid = false;
+        }
+        if (!staticLayerValid || staticLayerScale != layerScale) {
+            Graphics layerGraphics = staticLayer.begin();
+            try {
+                layerGraphics.setColor(BACKGROUND_COLOR);
+                layerGraphics.fillRectangle(0, 0, layerWidth, layerHeight);
+                layerGraphics.translate(0, worldHeight * layerScale);
+                layerGraphics.scale(layerScale, -layerScale);
+                paintBackground(layerGraphics);
+                for (int i = 0; i < count; ++i) {
+                    staticLayerObjects[i].paint(layerGraphics);
+                }
+            } finally {
+                staticLayer.end();
+            }
+            staticLayerValid = true;
+            staticLayerScale = layerScale;
+        }
+        // Whole pixel offsets let the layer be copied without resampling
+        AffineTransform transform = layerTransform;
+        transform.set(screenTransform);
+        transform.translate(rect.x, height - rect.y - worldHeight * layerScale);
+        transform.e = Math.round(transform.e);
+        transform.f = Math.round(transform.f);
+        graphics.setTransform(transform);
+        staticLayer.draw(graphics);
+        graphics.setTransform(originalTransform);
+        return end;
+    }
+
+    /**
+     * <p>Makes the game repaint static objects into their layer in the next frame.</p>
+     */
+    public void invalidateStaticLayer() {
+        staticLayerValid = false;
+        dirtyRegionValid = false;
+    }
+
+    public float getDirtyMargin() {
+        return dirtyMargin;
+    }
+
+    /**
+     * <p>Sets how far in world units pictures of objects may extend beyond the fixtures of their bodies.
+     * Areas around moved bodies are repainted with this margin.</p>
+     */
+    public void setDirtyMargin(float dirtyMargin) {
+        this.dirtyMargin = Math.max(0, dirtyMargin);
+    }
+
+    /**
+     * <p>Makes the whole screen repaint in the next frame.</p>
+     */
+    public void repaint() {
+        dirtyRegionValid = false;
+    }
+
+    /**
+     * <p>Makes the given area of the world repaint in the next frame.</p>
+     */
+    public void repaint(float x, float y, float width, float height) {
+        addDirtyArea(x, y, x + width, y + height);
+    }
+
+    private void addDirtyArea(float minX, float minY, float maxX, float maxY) {
+        dirtyMinX = Math.min(dirtyMinX, minX);
+        dirtyMinY = Math.min(dirtyMinY, minY);
+        dirtyMaxX = Math.max(dirtyMaxX, maxX);
+        dirtyMaxY = Math.max(dirtyMaxY, maxY);
+    }
+
+    /**
+     * <p>Reports the area covered by bodies that moved, appeared or disappeared since the previous call and
+     * by explicitly repainted areas. The whole screen is reported when the view moves, when objects are added or
+     * reordered and when bodies are painted at interpolated positions.</p>
+     */
+    @Override
+    public boolean getDirtyRegion(Rectangle region) {
+        trackBodies();
+        Rectangle rect = getViewRectangle();
+        float viewScale = scale * naturalScale;
+        boolean full = !dirtyRegionValid || interpolated || outlinePainted || rect.x != paintedViewX ||
+                rect.y != paintedViewY || viewScale != paintedViewScale || width != paintedWidth ||
+                height != paintedHeight;
+        dirtyRegionValid = true;
+        paintedViewX = rect.x;
+        paintedViewY = rect.y;
+        paintedViewScale = viewScale;
+        paintedWidth = width;
+        paintedHeight = height;
+        float minX = dirtyMinX - dirtyMargin;
+        float minY = dirtyMinY - dirtyMargin;
+        float maxX = dirtyMaxX + dirtyMargin;
+        float maxY = dirtyMaxY + dirtyMargin;
+        dirtyMinX = Float.POSITIVE_INFINITY;
+        dirtyMinY = Float.POSITIVE_INFINITY;
+        dirtyMaxX = Float.NEGATIVE_INFINITY;
+        dirtyMaxY = Float.NEGATIVE_INFINITY;
+        if (full) {
+            return false;
+        }
+        region.x = 0;
+        region.y = 0;
+        region.width = 0;
+        region.height = 0;
+        if (minX > maxX || minY > maxY) {
+            return true;
+        }
+        float left = Math.max(0, (float)Math.floor(rect.x + minX * viewScale) - 1);
+        float right = Math.min(width, (float)Math.ceil(rect.x + maxX * viewScale) + 1);
+        float top = Math.max(0, (float)Math.floor(height - rect.y - maxY * viewScale) - 1);
+        float bottom = Math.min(height, (float)Math.ceil(height - rect.y - minY * viewScale) + 1);
+        if (left < right && top < bottom) {
+            region.x = left;
+            region.y = top;
+            region.width = right - left;
+            region.height = bottom - top;
+        }
+        return true;
+    }
+
+    /**
+     * <p>Compares bodies with their state at the previous call and adds bounds of changed bodies, both old and
+     * new, to the dirty area. As new bodies are added to the head of the body list, bodies are matched
+     * counting from the tail.</p>
+     */
+    private void trackBodies() {
+        int count = world.getBodyCount();
+        if (paintedBodies.length < count) {
+            int capacity = Math.max(count, paintedBodies.length * 2);
+            paintedBodies = Arrays.copyOf(paintedBodies, capacity);
+            paintedBodyStates = Arrays.copyOf(paintedBodyStates, capacity * BODY_STATE_SIZE);
+        }
+        Body[] bodies = paintedBodies;
+        float[] states = paintedBodyStates;
+        int index = count;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            --index;
+            int offset = index * BODY_STATE_SIZE;
+            Transform xf = body.getTransform();
+            float angle = body.getAngle();
+            if (index < paintedBodyCount) {
+                if (bodies[index] == body && states[offset] == xf.p.x && states[offset + 1] == xf.p.y &&
+                        states[offset + 2] == angle) {
+                    continue;
+                }
+                addDirtyArea(states[offset + 3], states[offset + 4], states[offset + 5], states[offset + 6]);
+            }
+            computeBodyBounds(body, xf);
+            bodies[index] = body;
+            states[offset] = xf.p.x;
+            states[offset + 1] = xf.p.y;
+            states[offset + 2] = angle;
+            states[offset + 3] = bodyBounds.lowerBound.x;
+            states[offset + 4] = bodyBounds.lowerBound.y;
+            states[offset + 5] = bodyBounds.upperBound.x;
+            states[offset + 6] = bodyBounds.upperBound.y;
+            addDirtyArea(states[offset + 3], states[offset + 4], states[offset + 5], states[offset + 6]);
+        }
+        for (int i = count; i < paintedBodyCount; ++i) {
+            int offset = i * BODY_STATE_SIZE;
+            addDirtyArea(states[offset + 3], states[offset + 4], states[offset + 5], states[offset + 6]);
+            bodies[i] = null;
+        }
+        paintedBodyCount = count;
+    }
+
+    private void computeBodyBounds(Body body, Transform xf) {
+        bodyBounds.lowerBound.set(xf.p);
+        bodyBounds.upperBound.set(xf.p);
+        for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+            Shape shape = fixture.getShape();
+            for (int i = 0; i < shape.getChildCount(); ++i) {
+                shape.computeAABB(fixtureBounds, xf, i);
+                bodyBounds.combine(fixtureBounds);
+            }
+        }
+    }
+
+    /**
+     * <p>Estimates the current game time from the wall clock and renders the state that was current
+     * one time slice ago, which lies between the two snapshots.</p>
+     */
+    private float getInterpolationFactor(WorldSnapshot snapshot, WorldSnapshot previous) {
+        long renderTime = currentTime + (System.currentTimeMillis() - lastIdleWallTime) - timeSlice;
+        long interval = snapshot.getTime() - previous.getTime();
+        if (interval <= 0) {
+            return 1;
         }
+        return Math.max(0, Math.min(1, (renderTime - previous.getTime()) / (float)interval));
     }
 
+    /**
+     * <p>Paints what lies below all objects. When the bottom objects are static, the background is painted
+     * along with them into a layer, so it should be static as well.</p>
+     */
     protected void paintBackground(@SuppressWarnings("unused") Graphics graphics) {
     }
 
@@ -339,7 +1129,11 @@ public class Game implements EntryPoint {
         float y = this.height / 2f - (originY * scale * naturalScale);
         x = Math.min(0, Math.max(x, -this.worldWidth * scale * naturalScale + this.width));
         y = Math.min(0, Math.max(y, -this.worldHeight * scale * naturalScale + this.height));
-        return new Rectangle(x, y, width, height);
+        viewRectangle.x = x;
+        viewRectangle.y = y;
+        viewRectangle.width = width;
+        viewRectangle.height = height;
+        return viewRectangle;
     }
 
     @Override
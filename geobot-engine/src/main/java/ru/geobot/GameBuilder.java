@@ -8,6 +8,8 @@ public abstract class GameBuilder {
     private float width = 10;
     private float height = 5;
     private long timeSlice = 17;
+    private int velocityIterations = 25;
+    private int positionIterations = 16;
 
     public float getHeight() {
         return height;
@@ -25,6 +27,22 @@ public abstract class GameBuilder {
         this.timeSlice = timeSlice;
     }
 
+    public int getVelocityIterations() {
+        return velocityIterations;
+    }
+
+    public void setVelocityIterations(int velocityIterations) {
+        this.velocityIterations = velocityIterations;
+    }
+
+    public int getPositionIterations() {
+        return positionIterations;
+    }
+
+    public void setPositionIterations(int positionIterations) {
+        this.positionIterations = positionIterations;
+    }
+
     public float getWidth() {
         return width;
     }
@@ -35,6 +53,9 @@ public abstract class GameBuilder {
 
     public Game build() {
         Game game = createGame(timeSlice);
+        game.setTimeSlice(timeSlice);
+        game.setVelocityIterations(velocityIterations);
+        game.setPositionIterations(positionIterations);
         game.width = width;
         game.height = height;
         return game;
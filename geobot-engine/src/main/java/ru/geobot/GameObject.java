@@ -1,7 +1,8 @@
 package ru.geobot;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.World;
 import ru.geobot.graphics.Graphics;
 
@@ -12,12 +13,16 @@ import ru.geobot.graphics.Graphics;
 public class GameObject {
     Game game;
     int zIndex;
-    private List<GameObjectListener> listeners;
+    long sequence;
+    int hitTestBodyCount;
+    int hitTestStamp;
+    boolean ticking = true;
+    boolean staticDrawing;
+    private GameObjectListener[] listeners;
 
     public GameObject(Game game) {
         this.game = game;
-        game.cleanRemovedObjects();
-        game.objects.add(this);
+        game.addObject(this);
     }
 
     public final void dispose() {
@@ -26,6 +31,8 @@ public class GameObject {
         }
         destroy();
         game.hasRemovedObjects = true;
+        game.invalidateHitTest();
+        game.repaint();
         game = null;
     }
 
@@ -45,7 +52,7 @@ public class GameObject {
 
     protected void mouseEnter() {
         if (listeners != null) {
-            for (GameObjectListener listener : listeners.toArray(new GameObjectListener[0])) {
+            for (GameObjectListener listener : listeners) {
                 listener.mouseEnter();
             }
         }
@@ -53,30 +60,59 @@ public class GameObject {
 
     protected void mouseLeave() {
         if (listeners != null) {
-            for (GameObjectListener listener : listeners.toArray(new GameObjectListener[0])) {
+            for (GameObjectListener listener : listeners) {
                 listener.mouseLeave();
             }
         }
     }
 
+    /**
+     * <p>Adds a listener that does not need {@link GameObjectListener#time(long)}. The listener receives it only
+     * while the object is ticking for some other reason.</p>
+     */
     public final void addListener(GameObjectListener listener) {
+        addListener(listener, false);
+    }
+
+    /**
+     * <p>Adds a listener. If <code>ticking</code> is <code>true</code>, the object becomes ticking, so that the
+     * listener receives {@link GameObjectListener#time(long)} on each step.</p>
+     */
+    public final void addListener(GameObjectListener listener, boolean ticking) {
         if (listeners == null) {
-            listeners = new ArrayList<>();
+            listeners = new GameObjectListener[] { listener };
+        } else {
+            listeners = Arrays.copyOf(listeners, listeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+        }
+        if (ticking) {
+            setTicking(true);
         }
-        listeners.add(listener);
     }
 
     public final void removeListener(GameObjectListener listener) {
         if (listeners == null) {
             return;
         }
-        listeners.remove(listener);
+        for (int i = 0; i < listeners.length; ++i) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    listeners = null;
+                } else {
+                    GameObjectListener[] newListeners = new GameObjectListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, newListeners, 0, i);
+                    System.arraycopy(listeners, i + 1, newListeners, i, newListeners.length - i);
+                    listeners = newListeners;
+                }
+                break;
+            }
+        }
     }
 
     protected boolean click() {
         boolean handled = false;
         if (listeners != null) {
-            for (GameObjectListener listener : listeners.toArray(new GameObjectListener[0])) {
+            for (GameObjectListener listener : listeners) {
                 if (listener.click()) {
                     handled = true;
                 }
@@ -87,18 +123,131 @@ public class GameObject {
 
     protected void time(long time) {
         if (listeners != null) {
-            for (GameObjectListener listener : listeners.toArray(new GameObjectListener[0])) {
+            for (GameObjectListener listener : listeners) {
                 listener.time(time);
             }
         }
     }
 
+    /**
+     * <p>Tells whether {@link #time(long)} has nothing to do at the moment, for example because all bodies
+     * of the object sleep. The game does not call {@link #time(long)} on sleeping objects.</p>
+     */
+    protected boolean isSleeping() {
+        return false;
+    }
+
+    protected final boolean isTicking() {
+        return ticking;
+    }
+
+    /**
+     * <p>Sets whether the game calls {@link #time(long)} on this object. Objects are ticking by default;
+     * objects that neither override {@link #time(long)} nor have listeners added as ticking should turn it off.</p>
+     */
+    protected final void setTicking(boolean ticking) {
+        if (this.ticking == ticking) {
+            return;
+        }
+        this.ticking = ticking;
+        if (game != null) {
+            game.tickingChanged();
+        }
+    }
+
+    protected final boolean isStaticDrawing() {
+        return staticDrawing;
+    }
+
+    /**
+     * <p>Sets whether {@link #paint(Graphics)} draws the same picture in every frame. The game paints static
+     * objects lying at the bottom of the z-order once into a layer at the current scale and reuses it until
+     * the scale changes or {@link #invalidate()} is called. Only the part of the picture within the bounds of
+     * the world is kept.</p>
+     */
+    protected final void setStaticDrawing(boolean staticDrawing) {
+        if (this.staticDrawing == staticDrawing) {
+            return;
+        }
+        this.staticDrawing = staticDrawing;
+        invalidate();
+    }
+
+    /**
+     * <p>Tells the game that the picture of a static object has changed.</p>
+     */
+    protected final void invalidate() {
+        if (game != null) {
+            game.invalidateStaticLayer();
+        }
+    }
+
+    /**
+     * <p>Tells the game that the picture of the object has changed in a way that does not follow from its
+     * bodies moving, so the whole screen has to be repainted.</p>
+     */
+    protected final void repaint() {
+        if (game != null) {
+            game.repaint();
+        }
+    }
+
+    /**
+     * <p>Tells the game that the picture of the object has changed within the given area of the world.</p>
+     */
+    protected final void repaint(float x, float y, float width, float height) {
+        if (game != null) {
+            game.repaint(x, y, width, height);
+        }
+    }
+
     protected final int getZIndex() {
         return zIndex;
     }
 
     protected final void setZIndex(int zIndex) {
-        this.zIndex = zIndex;
+        if (zIndex == this.zIndex) {
+            return;
+        }
+        if (game != null) {
+            game.changeZIndex(this, zIndex);
+        } else {
+            this.zIndex = zIndex;
+        }
+    }
+
+    /**
+     * <p>Tells the game that {@link #hasPoint(float, float)} can only be true for points lying within
+     * <code>margin</code> of the given body's fixtures, so the object is skipped by mouse tracking when the mouse
+     * is far from all of its registered bodies. Objects without registered bodies are always tested.</p>
+     */
+    protected final void addHitTestBody(Body body, float margin) {
+        game.addHitTestBody(this, body, margin);
+    }
+
+    protected final void removeHitTestBody(Body body) {
+        game.removeHitTestBody(this, body);
+    }
+
+    /**
+     * <p>Gets the position at which the body is painted in the current frame. {@link #paint(Graphics)} should
+     * use this instead of the position of the body, which may be ahead of the frame when the game is
+     * interpolated.</p>
+     */
+    protected final Vec2 getPaintPosition(Body body) {
+        return game != null ? game.getPaintPosition(body) : body.getPosition();
+    }
+
+    protected final float getPaintAngle(Body body) {
+        return game != null ? game.getPaintAngle(body) : body.getAngle();
+    }
+
+    /**
+     * <p>Converts a point from the body's coordinates to the world at the position of the body in the
+     * current frame.</p>
+     */
+    protected final Vec2 getPaintWorldPoint(Body body, Vec2 localPoint) {
+        return game != null ? game.getPaintWorldPoint(body, localPoint) : body.getWorldPoint(localPoint);
     }
 
     protected final World getWorld() {
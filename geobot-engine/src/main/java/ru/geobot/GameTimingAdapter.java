@@ -0,0 +1,19 @@
+package ru.geobot;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public abstract class GameTimingAdapter implements GameTimingListener {
+    @Override
+    public void slicesLate(int count) {
+    }
+
+    @Override
+    public void slicesDropped(int count) {
+    }
+
+    @Override
+    public void iterationsChanged(int velocityIterations, int positionIterations) {
+    }
+}
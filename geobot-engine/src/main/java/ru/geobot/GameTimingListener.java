@@ -0,0 +1,27 @@
+package ru.geobot;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public interface GameTimingListener {
+    /**
+     * <p>Called when a single idle call had to perform several time slices to catch up with the clock.</p>
+     *
+     * @param count the number of slices performed after the first one.
+     */
+    void slicesLate(int count);
+
+    /**
+     * <p>Called when the number of slices to catch up exceeded {@link Game#getMaxCatchUpSteps()} and
+     * the remaining slices were skipped, or postponed if the game is time dilated.</p>
+     *
+     * @param count the number of skipped slices.
+     */
+    void slicesDropped(int count);
+
+    /**
+     * <p>Called when adaptive iterations are enabled and the game changed the number of solver iterations.</p>
+     */
+    void iterationsChanged(int velocityIterations, int positionIterations);
+}
@@ -0,0 +1,292 @@
+package ru.geobot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import ru.geobot.graphics.BatchingGraphics;
+import ru.geobot.graphics.Rectangle;
+import ru.geobot.resources.ResourceLoader;
+import ru.geobot.resources.ResourceReader;
+
+/**
+ * <p>Drives an {@link EntryPoint} without Swing and without any display. Simulated time advances by a fixed
+ * step on every iteration, independently of the wall clock, so the simulation runs as fast as the CPU allows.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class HeadlessRunner {
+    private long stepDuration = 17;
+    private int paintRatio;
+    private BatchingGraphics batchingGraphics;
+    private boolean dirtyRegions;
+    private Rectangle dirtyRegion = new Rectangle(0, 0, 0, 0);
+    private int width = 1024;
+    private int height = 768;
+    private ResourceReader resourceReader = new ResourceReader() {
+        @Override public <T> T getResourceSet(Class<T> resourceSetType) {
+            return ResourceLoader.load(resourceSetType);
+        }
+    };
+
+    public long getStepDuration() {
+        return stepDuration;
+    }
+
+    public void setStepDuration(long stepDuration) {
+        if (stepDuration <= 0) {
+            throw new IllegalArgumentException("Step duration must be positive: " + stepDuration);
+        }
+        this.stepDuration = stepDuration;
+    }
+
+    public int getPaintRatio() {
+        return paintRatio;
+    }
+
+    /**
+     * <p>Sets how often the entry point is painted into an offscreen buffer. Zero means
+     * that the entry point is never painted, <code>n</code> means every n-th step.</p>
+     */
+    public void setPaintRatio(int paintRatio) {
+        this.paintRatio = paintRatio;
+    }
+
+    public boolean isBatching() {
+        return batchingGraphics != null;
+    }
+
+    /**
+     * <p>Sets whether frames are recorded into a {@link BatchingGraphics} before being painted.</p>
+     */
+    public void setBatching(boolean batching) {
+        batchingGraphics = batching ? new BatchingGraphics() : null;
+    }
+
+    public boolean isDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    /**
+     * <p>Sets whether only changed parts of frames are painted, for entry points that implement
+     * {@link DirtyRegionProvider}. Frames in which nothing has changed are skipped.</p>
+     */
+    public void setDirtyRegions(boolean dirtyRegions) {
+        this.dirtyRegions = dirtyRegions;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+    }
+
+    public ResourceReader getResourceReader() {
+        return resourceReader;
+    }
+
+    public void setResourceReader(ResourceReader resourceReader) {
+        this.resourceReader = resourceReader;
+    }
+
+    public Report run(EntryPoint entryPoint, long duration) {
+        final boolean[] stopped = new boolean[1];
+        entryPoint.setResourceReader(resourceReader);
+        entryPoint.start(new EntryPointCallback() {
+            @Override public void stop() {
+                stopped[0] = true;
+            }
+        });
+        entryPoint.resize(width, height);
+        BufferedImage frameBuffer = paintRatio > 0 ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB) :
+                null;
+
+        Report report = new Report();
+        long budget = stepDuration * 1000000;
+        long startTime = System.nanoTime();
+        for (long time = stepDuration; time <= duration && !stopped[0]; time += stepDuration) {
+            long stepStart = System.nanoTime();
+            entryPoint.idle(time);
+            long stepTime = System.nanoTime() - stepStart;
+            report.steps++;
+            report.simulatedTime = time;
+            report.idleTime += stepTime;
+            report.maxStepTime = Math.max(report.maxStepTime, stepTime);
+            if (stepTime > budget) {
+                report.overBudgetSteps++;
+            }
+            if (frameBuffer != null && report.steps % paintRatio == 0) {
+                long paintStart = System.nanoTime();
+                Rectangle clip = getClip(entryPoint);
+                if (clip != null) {
+                    paint(entryPoint, frameBuffer, clip);
+                    report.frames++;
+                    report.paintedArea += (clip.width * clip.height) / ((double)width * height);
+                } else {
+                    report.skippedFrames++;
+                }
+                report.paintTime += System.nanoTime() - paintStart;
+                if (batchingGraphics != null) {
+                    report.batchedImages += batchingGraphics.getFlushedImageCount();
+                    report.imageBatches += batchingGraphics.getFlushedBatchCount();
+                }
+            }
+        }
+        report.wallTime = System.nanoTime() - startTime;
+        report.stopped = stopped[0];
+        return report;
+    }
+
+    /**
+     * <p>Gets the part of the frame to paint, or <code>null</code> if nothing has changed.</p>
+     */
+    private Rectangle getClip(EntryPoint entryPoint) {
+        if (!dirtyRegions || !(entryPoint instanceof DirtyRegionProvider) ||
+                !((DirtyRegionProvider)entryPoint).getDirtyRegion(dirtyRegion)) {
+            return new Rectangle(0, 0, width, height);
+        }
+        if (dirtyRegion.isEmpty()) {
+            return null;
+        }
+        int x = (int)Math.floor(dirtyRegion.x);
+        int y = (int)Math.floor(dirtyRegion.y);
+        return new Rectangle(x, y, (int)Math.ceil(dirtyRegion.right()) - x,
+                (int)Math.ceil(dirtyRegion.bottom()) - y);
+    }
+
+    private void paint(EntryPoint entryPoint, BufferedImage frameBuffer, Rectangle clip) {
+        Graphics2D awtGraphics = frameBuffer.createGraphics();
+        awtGraphics.setColor(Color.black);
+        awtGraphics.fillRect((int)clip.x, (int)clip.y, (int)clip.width, (int)clip.height);
+        AWTGraphics graphics = new AWTGraphics(awtGraphics, clip);
+        if (batchingGraphics != null) {
+            batchingGraphics.begin(graphics);
+            entryPoint.paint(batchingGraphics);
+            batchingGraphics.flush(graphics);
+        } else {
+            entryPoint.paint(graphics);
+        }
+        awtGraphics.dispose();
+    }
+
+    public static class Report {
+        private long steps;
+        private long frames;
+        private long simulatedTime;
+        private long wallTime;
+        private long idleTime;
+        private long paintTime;
+        private long maxStepTime;
+        private long overBudgetSteps;
+        private long batchedImages;
+        private long imageBatches;
+        private long skippedFrames;
+        private double paintedArea;
+        private boolean stopped;
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        /**
+         * <p>Gets simulated time in milliseconds.</p>
+         */
+        public long getSimulatedTime() {
+            return simulatedTime;
+        }
+
+        /**
+         * <p>Gets wall-clock time spent in the run, in nanoseconds.</p>
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        public long getIdleTime() {
+            return idleTime;
+        }
+
+        public long getPaintTime() {
+            return paintTime;
+        }
+
+        public long getMaxStepTime() {
+            return maxStepTime;
+        }
+
+        public long getOverBudgetSteps() {
+            return overBudgetSteps;
+        }
+
+        /**
+         * <p>Gets the total number of images drawn through batching.</p>
+         */
+        public long getBatchedImages() {
+            return batchedImages;
+        }
+
+        /**
+         * <p>Gets the total number of runs of equal images the batched images were merged into.</p>
+         */
+        public long getImageBatches() {
+            return imageBatches;
+        }
+
+        /**
+         * <p>Gets the number of frames that were not painted because nothing had changed.</p>
+         */
+        public long getSkippedFrames() {
+            return skippedFrames;
+        }
+
+        /**
+         * <p>Gets the average part of the screen painted per painted frame, from 0 to 1.</p>
+         */
+        public double getAveragePaintedArea() {
+            return frames > 0 ? paintedArea / frames : 0;
+        }
+
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        public double getSimulatedSecondsPerSecond() {
+            return wallTime > 0 ? simulatedTime * 1000000.0 / wallTime : 0;
+        }
+
+        public double getAverageStepTime() {
+            return steps > 0 ? idleTime / (double)steps : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Simulated ").append(simulatedTime).append(" ms in ").append(steps).append(" steps, ")
+                    .append(wallTime / 1000000).append(" ms wall time\n");
+            sb.append("Simulated seconds per second: ")
+                    .append(String.format("%.2f", getSimulatedSecondsPerSecond())).append('\n');
+            sb.append("Average step: ").append(String.format("%.3f", getAverageStepTime() / 1000000))
+                    .append(" ms, max step: ").append(String.format("%.3f", maxStepTime / 1000000.0))
+                    .append(" ms, steps over budget: ").append(overBudgetSteps);
+            if (frames > 0 || skippedFrames > 0) {
+                sb.append('\n').append("Painted ").append(frames).append(" frames, average paint: ")
+                        .append(String.format("%.3f", paintTime / 1000000.0 / (frames + skippedFrames)))
+                        .append(" ms");
+                if (skippedFrames > 0 || paintedArea < frames) {
+                    sb.append('\n').append("Skipped frames: ").append(skippedFrames)
+                            .append(", average painted area: ")
+                            .append(String.format("%.1f", getAveragePaintedArea() * 100)).append('%');
+                }
+                if (batchedImages > 0) {
+                    sb.append('\n').append("Batched images per frame: ")
+                            .append(String.format("%.1f", batchedImages / (double)frames))
+                            .append(", batches per frame: ")
+                            .append(String.format("%.1f", imageBatches / (double)frames));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
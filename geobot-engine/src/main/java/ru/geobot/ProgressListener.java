@@ -0,0 +1,9 @@
+package ru.geobot;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public interface ProgressListener {
+    void progressChanged(int current, int total);
+}
@@ -1,6 +1,21 @@
 package ru.geobot;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
@@ -8,22 +23,116 @@ import org.objectweb.asm.Type;
 import ru.geobot.resources.ResourceReader;
 
 /**
+ * <p>Finds all resource sets and loads them in a {@link ForkJoinPool}, one task per
+ * resource set. {@link ru.geobot.resources.ResourceLoader} splits each set further into one task per
+ * resource.</p>
+ *
+ * <p>Resource sets are listed in {@link ResourceSetProcessor#INDEX_PATH} files written at build time. Only when
+ * there are no such files, the class path is scanned for them.</p>
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
 public class ResourcePreloader {
     private ResourceReader loader;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private List<ProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+    private Set<String> classNames = new LinkedHashSet<>();
 
     public ResourcePreloader(ResourceReader loader) {
         this.loader = loader;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * <p>Sets the number of threads that load resources.</p>
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * <p>Adds a listener that is notified each time a resource set is loaded. Listeners are called on
+     * loading threads.</p>
+     */
+    public void addProgressListener(ProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    public void removeProgressListener(ProgressListener listener) {
+        progressListeners.remove(listener);
+    }
+
+    /**
+     * <p>Loads all resource sets and waits until they are loaded. If some resource set fails to load, the
+     * error is rethrown.</p>
+     */
     public void preloadResources() {
+        classNames.clear();
         try {
-            scanner.scan();
+            if (!readIndex()) {
+                scanner.scan();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        final int total = classNames.size();
+        final AtomicInteger loaded = new AtomicInteger();
+        fireProgress(0, total);
+        final List<RecursiveAction> tasks = new ArrayList<>();
+        for (final String className : classNames) {
+            tasks.add(new RecursiveAction() {
+                @Override protected void compute() {
+                    try {
+                        preload(className);
+                    } finally {
+                        fireProgress(loaded.incrementAndGet(), total);
+                    }
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private boolean readIndex() throws IOException {
+        ClassLoader classLoader = ResourcePreloader.class.getClassLoader();
+        Enumeration<URL> indexes = classLoader.getResources(ResourceSetProcessor.INDEX_PATH);
+        if (!indexes.hasMoreElements()) {
+            return false;
+        }
+        while (indexes.hasMoreElements()) {
+            try (InputStream input = indexes.nextElement().openStream();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                while (true) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        classNames.add(line);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void fireProgress(int current, int total) {
+        for (ProgressListener listener : progressListeners) {
+            listener.progressChanged(current, total);
+        }
     }
 
     private void preload(String className) {
@@ -56,7 +165,7 @@ public class ResourcePreloader {
         @Override
         public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
             if (desc.equals(Type.getDescriptor(ResourceSet.class))) {
-                preload(className.replace('/', '.'));
+                classNames.add(className.replace('/', '.'));
             }
             return null;
         };
@@ -0,0 +1,204 @@
+package ru.geobot;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import ru.geobot.resources.PolygonalBodyFactory;
+import ru.geobot.resources.ResourcePath;
+import ru.geobot.resources.ShapeCompiler;
+import ru.geobot.util.DecompositionMode;
+import ru.geobot.util.Vertex;
+
+/**
+ * <p>Writes names of all types annotated with {@link ResourceSet} into {@link #INDEX_PATH}, so that
+ * {@link ResourcePreloader} does not have to scan the class path. Names from an index left by a previous
+ * compilation are kept as long as they still denote resource sets, so incremental builds that recompile
+ * only some of the sources do not lose them.</p>
+ *
+ * <p>Text shapes of body factories in resource sets are compiled into binary shapes by {@link ShapeCompiler}
+ * and written next to the text shapes in the class output. Text shapes are looked up in the class output,
+ * where resources are copied before compilation.</p>
+ *
+ * <p>When the {@link #FIXTURE_REPORT_OPTION} option is <code>true</code>, the number of convex pieces of each
+ * shape, that is the number of fixtures its bodies get, is reported along with the number of pieces
+ * {@link DecompositionMode#GREEDY} would give.</p>
+ *
+ * @author Alexey Andreev
+ */
+@SupportedAnnotationTypes("ru.geobot.ResourceSet")
+@SupportedOptions(ResourceSetProcessor.FIXTURE_REPORT_OPTION)
+public class ResourceSetProcessor extends AbstractProcessor {
+    public static final String INDEX_PATH = "META-INF/geobot/resource-sets";
+    public static final String FIXTURE_REPORT_OPTION = "geobot.fixtureReport";
+    private Set<String> classNames = new TreeSet<>();
+    private Set<String> compiledShapes = new HashSet<>();
+    private int fixtureCount;
+    private int greedyFixtureCount;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (isFixtureReportEnabled() && !compiledShapes.isEmpty()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Total fixture count " +
+                        fixtureCount + ", " + greedyFixtureCount + " with greedy decomposition");
+            }
+            if (!classNames.isEmpty()) {
+                readPreviousIndex();
+                writeIndex();
+            }
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(ResourceSet.class)) {
+            if (element instanceof TypeElement) {
+                TypeElement type = (TypeElement)element;
+                classNames.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+                compileShapes(type);
+            }
+        }
+        return false;
+    }
+
+    private void compileShapes(TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            ResourcePath path = member.getAnnotation(ResourcePath.class);
+            String returnType = ((ExecutableElement)member).getReturnType().toString();
+            if (path == null || !returnType.equals(PolygonalBodyFactory.class.getName())) {
+                continue;
+            }
+            String resourcePackage = packageName;
+            String resourceName = path.value();
+            if (resourceName.startsWith("/")) {
+                int index = resourceName.lastIndexOf('/');
+                resourcePackage = resourceName.substring(1, Math.max(1, index)).replace('/', '.');
+                resourceName = resourceName.substring(index + 1);
+            }
+            compileShape(resourcePackage, resourceName, member);
+        }
+    }
+
+    private void compileShape(String packageName, String name, Element element) {
+        String compiledName = ShapeCompiler.getCompiledPath(name);
+        if (!compiledShapes.add(packageName + "/" + compiledName)) {
+            return;
+        }
+        byte[] source;
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, packageName,
+                    name);
+            try (InputStream input = file.openInputStream()) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                while (true) {
+                    int bytesRead = input.read(buffer);
+                    if (bytesRead < 0) {
+                        break;
+                    }
+                    output.write(buffer, 0, bytesRead);
+                }
+                source = output.toByteArray();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Shape " + name + " was not " +
+                    "found in the class output, it will be triangulated at run time", element);
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, packageName,
+                    compiledName, element);
+            List<List<Vertex>> pieces = ShapeCompiler.compile(source);
+            try (OutputStream output = file.openOutputStream()) {
+                ShapeCompiler.write(output, ShapeCompiler.hash(source), ShapeCompiler.BUILD_MODE, pieces);
+            }
+            if (isFixtureReportEnabled()) {
+                int greedyCount = ShapeCompiler.compile(source, DecompositionMode.GREEDY).size();
+                fixtureCount += pieces.size();
+                greedyFixtureCount += greedyCount;
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Shape " +
+                        packageName.replace('.', '/') + "/" + name + ": fixture count " + pieces.size() + ", " +
+                        greedyCount + " with greedy decomposition");
+            }
+        } catch (IOException | RuntimeException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Error compiling shape " + name +
+                    ": " + e.getMessage(), element);
+        }
+    }
+
+    private boolean isFixtureReportEnabled() {
+        return Boolean.parseBoolean(processingEnv.getOptions().get(FIXTURE_REPORT_OPTION));
+    }
+
+    private void readPreviousIndex() {
+        FileObject file;
+        try {
+            file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+        } catch (IOException | IllegalArgumentException e) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(),
+                StandardCharsets.UTF_8))) {
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                line = line.trim();
+                if (line.isEmpty() || classNames.contains(line)) {
+                    continue;
+                }
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(line.replace('$', '.'));
+                if (type != null && type.getAnnotation(ResourceSet.class) != null) {
+                    classNames.add(line);
+                }
+            }
+        } catch (IOException e) {
+            // There is no previous index
+        }
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    INDEX_PATH);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String className : classNames) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Error writing " + INDEX_PATH +
+                    ": " + e.getMessage());
+        }
+    }
+}
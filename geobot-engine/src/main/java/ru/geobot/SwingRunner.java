@@ -2,15 +2,18 @@ package ru.geobot;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JComponent;
 import javax.swing.SwingUtilities;
+import ru.geobot.graphics.BatchingGraphics;
 import ru.geobot.graphics.Rectangle;
 import ru.geobot.resources.ResourceLoader;
 import ru.geobot.resources.ResourceReader;
@@ -22,11 +25,23 @@ import ru.geobot.resources.ResourceReader;
 public class SwingRunner extends JComponent {
     private static final long serialVersionUID = 4009968313752182106L;
     private int paintRatio = 1000 / 30;
+    private int idleRatio = 17;
     private Execution currentExecution;
     private BlockingQueue<Event> eventQueue = new LinkedBlockingQueue<>();
-    private volatile BufferedImage frameBuffer;
-    private boolean suspended;
-    private long timeOffset = System.currentTimeMillis();
+    private final Object bufferLock = new Object();
+    private Image[] frameBuffers = new Image[3];
+    private int readyBufferIndex = -1;
+    private int displayedBufferIndex = -1;
+    private boolean[] frameBuffersRestored = new boolean[3];
+    private volatile boolean accelerated;
+    private boolean threaded;
+    private volatile boolean batching;
+    private volatile int batchedImageCount;
+    private volatile int imageBatchCount;
+    private volatile boolean dirtyRegions;
+    private volatile int skippedFrameCount;
+    private volatile boolean suspended;
+    private volatile long timeOffset = System.currentTimeMillis();
     private long suspendTime = timeOffset;
     private List<Runnable> stopHandlers = new ArrayList<>();
 
@@ -119,8 +134,22 @@ public class SwingRunner extends JComponent {
         }
     }
 
+    public boolean isThreaded() {
+        return threaded;
+    }
+
+    /**
+     * <p>Sets whether the next {@link #run(EntryPoint)} paints frames on a separate thread. Otherwise frames
+     * are painted on the same thread that calls {@link EntryPoint#idle(long)}, so a slow frame delays
+     * physics and vice versa. In both modes calls to the entry point never overlap. Threaded frames are batched,
+     * so physics waits only while a frame is recorded, not while its images are drawn.</p>
+     */
+    public void setThreaded(boolean threaded) {
+        this.threaded = threaded;
+    }
+
     public void run(EntryPoint entryPoint) {
-        currentExecution = new Execution(entryPoint);
+        currentExecution = new Execution(entryPoint, threaded);
         currentExecution.setSize(getWidth(), getHeight());
         new Thread(currentExecution).start();
     }
@@ -141,22 +170,198 @@ public class SwingRunner extends JComponent {
         }
         suspended = true;
         suspendTime = System.currentTimeMillis();
+        wakeUp();
     }
 
     public void resume() {
         if (!suspended) {
             return;
         }
-        suspended = false;
         timeOffset += System.currentTimeMillis() - suspendTime;
+        suspended = false;
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        if (currentExecution != null) {
+            eventQueue.add(new WakeUpEvent());
+        }
+    }
+
+    public int getPaintRatio() {
+        return paintRatio;
+    }
+
+    /**
+     * <p>Sets the interval between two frames in milliseconds.</p>
+     */
+    public void setPaintRatio(int paintRatio) {
+        this.paintRatio = Math.max(1, paintRatio);
+        wakeUp();
+    }
+
+    public int getIdleRatio() {
+        return idleRatio;
+    }
+
+    /**
+     * <p>Sets the interval in milliseconds between two calls to {@link EntryPoint#idle(long)}. It should be
+     * equal to the time slice of the game, so that the runner wakes up once per physics step.</p>
+     */
+    public void setIdleRatio(int idleRatio) {
+        this.idleRatio = Math.max(1, idleRatio);
+        wakeUp();
+    }
+
+    /**
+     * <p>Gets the number of frames painted per second, measured over the last second.</p>
+     */
+    public float getFramesPerSecond() {
+        Execution execution = currentExecution;
+        return execution != null ? execution.framesPerSecond : 0;
+    }
+
+    /**
+     * <p>Gets the number of physics steps per second, as reported by {@link EntryPoint#idle(long)}, measured
+     * over the last second.</p>
+     */
+    public float getStepsPerSecond() {
+        Execution execution = currentExecution;
+        return execution != null ? execution.stepsPerSecond : 0;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * <p>Sets whether frames are first recorded into a {@link BatchingGraphics} and then flushed into the frame
+     * buffer. The entry point is locked only while recording. Takes effect on the next frame. Threaded
+     * execution always batches frames.</p>
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * <p>Gets the number of images drawn in the last frame when batching is on.</p>
+     */
+    public int getBatchedImageCount() {
+        return batchedImageCount;
+    }
+
+    /**
+     * <p>Gets the number of runs of equal images drawn in the last frame when batching is on.</p>
+     */
+    public int getImageBatchCount() {
+        return imageBatchCount;
+    }
+
+    public boolean isDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    /**
+     * <p>Sets whether only changed parts of frames are repainted. Works for entry points that implement
+     * {@link DirtyRegionProvider}, other entry points are always repainted entirely. When nothing has changed,
+     * the frame is skipped. Takes effect on the next frame.</p>
+     */
+    public void setDirtyRegions(boolean dirtyRegions) {
+        this.dirtyRegions = dirtyRegions;
+    }
+
+    /**
+     * <p>Gets the number of frames that were skipped since the runner started, because nothing had changed.</p>
+     */
+    public int getSkippedFrameCount() {
+        return skippedFrameCount;
+    }
+
+    public boolean isAccelerated() {
+        return accelerated;
+    }
+
+    /**
+     * <p>Sets whether frames are rendered into {@link VolatileImage}s, which can reside in video memory,
+     * instead of {@link BufferedImage}s. Takes effect on the next frame.</p>
+     */
+    public void setAccelerated(boolean accelerated) {
+        this.accelerated = accelerated;
     }
 
     @Override
     public void paint(Graphics g) {
         super.paint(g);
-        Graphics2D gfx = (Graphics2D)g;
-        gfx.setBackground(Color.black);
-        gfx.drawRenderedImage(frameBuffer, new AffineTransform());
+        Image frameBuffer;
+        synchronized (bufferLock) {
+            if (readyBufferIndex < 0) {
+                return;
+            }
+            displayedBufferIndex = readyBufferIndex;
+            frameBuffer = frameBuffers[displayedBufferIndex];
+        }
+        try {
+            Graphics2D gfx = (Graphics2D)g;
+            gfx.setBackground(Color.black);
+            gfx.drawImage(frameBuffer, 0, 0, null);
+            if (frameBuffer instanceof VolatileImage && ((VolatileImage)frameBuffer).contentsLost()) {
+                repaint();
+            }
+        } finally {
+            synchronized (bufferLock) {
+                displayedBufferIndex = -1;
+            }
+        }
+    }
+
+    /**
+     * <p>Finds a frame buffer that is neither displayed nor holds the latest complete frame. Buffers
+     * are reused between frames and are recreated only when the size or the kind of buffers changes.</p>
+     */
+    private int acquireFrameBuffer(int width, int height) {
+        GraphicsConfiguration gc = accelerated ? getGraphicsConfiguration() : null;
+        synchronized (bufferLock) {
+            int index = 0;
+            while (index == readyBufferIndex || index == displayedBufferIndex) {
+                ++index;
+            }
+            Image buffer = frameBuffers[index];
+            boolean valid = buffer != null && buffer.getWidth(null) == width && buffer.getHeight(null) == height &&
+                    buffer instanceof VolatileImage == (gc != null);
+            if (valid && gc != null) {
+                int status = ((VolatileImage)buffer).validate(gc);
+                valid = status != VolatileImage.IMAGE_INCOMPATIBLE;
+                if (status == VolatileImage.IMAGE_RESTORED) {
+                    frameBuffersRestored[index] = true;
+                }
+            }
+            if (!valid) {
+                if (buffer != null) {
+                    buffer.flush();
+                }
+                frameBuffers[index] = gc != null ? gc.createCompatibleVolatileImage(width, height) :
+                        new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                frameBuffersRestored[index] = true;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * <p>Tells whether contents of the buffer were lost since the previous call.</p>
+     */
+    private boolean takeFrameBufferRestored(int index) {
+        synchronized (bufferLock) {
+            boolean restored = frameBuffersRestored[index];
+            frameBuffersRestored[index] = false;
+            return restored;
+        }
+    }
+
+    private void publishFrameBuffer(int index) {
+        synchronized (bufferLock) {
+            readyBufferIndex = index;
+        }
     }
 
     public ResourceReader getResourceReader() {
@@ -177,9 +382,22 @@ public class SwingRunner extends JComponent {
         private volatile int width;
         private volatile int height;
         private AtomicBoolean sizeChanged = new AtomicBoolean(false);
-
-        public Execution(EntryPoint entryPoint) {
+        private boolean threaded;
+        private boolean frameRequested;
+        private volatile float framesPerSecond;
+        private volatile float stepsPerSecond;
+        private AtomicInteger frameCount = new AtomicInteger();
+        private int stepCount;
+        private long statisticsStartTime;
+        private BatchingGraphics batchingGraphics = new BatchingGraphics();
+        private Rectangle dirtyRegion = new Rectangle(0, 0, 0, 0);
+        private Rectangle[] pendingRegions = { new Rectangle(0, 0, 0, 0), new Rectangle(0, 0, 0, 0),
+                new Rectangle(0, 0, 0, 0) };
+        private boolean[] pendingFull = { true, true, true };
+
+        public Execution(EntryPoint entryPoint, boolean threaded) {
             this.entryPoint = entryPoint;
+            this.threaded = threaded;
         }
 
         @Override
@@ -187,49 +405,97 @@ public class SwingRunner extends JComponent {
             entryPoint.setResourceReader(resourceReader);
             entryPoint.start(this);
             entryPoint.resize(Math.max(1, getWidth()), Math.max(1, getHeight()));
+            Thread renderThread = null;
+            if (threaded) {
+                renderThread = new Thread(new Runnable() {
+                    @Override public void run() {
+                        render();
+                    }
+                });
+                renderThread.start();
+            }
             long nextPaintTime = System.currentTimeMillis();
+            long nextIdleTime = nextPaintTime;
+            statisticsStartTime = nextPaintTime;
+            boolean changed = true;
+            List<Event> events = new ArrayList<>();
             while (true) {
                 synchronized (monitor) {
                     if (stopped) {
                         break;
                     }
                 }
-                boolean shouldRepaint = false;
-                if (System.currentTimeMillis() > nextPaintTime) {
-                    shouldRepaint = true;
-                    long count = (System.currentTimeMillis() - nextPaintTime) / paintRatio;
-                    nextPaintTime += (1 + count) * paintRatio;
-                }
-                List<Event> events = new ArrayList<>();
                 eventQueue.drainTo(events);
-                for (Event event : events) {
+                if (processEvents(events)) {
+                    changed = true;
+                }
+                if (sizeChanged.compareAndSet(true, false)) {
                     synchronized (monitor) {
-                        event.process(entryPoint);
+                        entryPoint.resize(Math.max(1, width), Math.max(1, height));
                     }
+                    changed = true;
                 }
-                boolean shouldWait = suspended || !entryPoint.idle(System.currentTimeMillis() - timeOffset);
-                boolean shouldChangeSize = sizeChanged.compareAndSet(true, false);
-                int currentWidth = Math.max(1, width);
-                int currentHeight = Math.max(1, height);
-                if (shouldChangeSize) {
+                long currentTime = System.currentTimeMillis();
+                if (!suspended && currentTime >= nextIdleTime) {
                     synchronized (monitor) {
-                        entryPoint.resize(currentWidth, currentHeight);
+                        stepCount += entryPoint.idle(currentTime - timeOffset);
                     }
+                    // Keep the schedule instead of counting from the late wakeup, but skip missed wakeups,
+                    // since a single call catches up with the clock
+                    long count = (currentTime - nextIdleTime) / idleRatio;
+                    nextIdleTime += (1 + count) * idleRatio;
+                    changed = true;
                 }
-                if (shouldRepaint) {
-                    paint(currentWidth, currentHeight);
-                    shouldWait = false;
+                if (threaded) {
+                    if (changed) {
+                        requestFrame();
+                        changed = false;
+                    }
+                } else if (currentTime >= nextPaintTime && changed) {
+                    paint(Math.max(1, width), Math.max(1, height));
+                    changed = false;
+                    long count = (currentTime - nextPaintTime) / paintRatio;
+                    nextPaintTime += (1 + count) * paintRatio;
                 }
-                if (shouldWait) {
-                    synchronized (monitor) {
-                        try {
-                            monitor.wait(2);
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
+                updateStatistics(currentTime);
+
+                // Sleep until the next deadline or until some event arrives. When suspended, nothing
+                // happens until an event arrives, unless there is a pending change to paint
+                long deadline = Long.MAX_VALUE;
+                if (changed) {
+                    deadline = nextPaintTime;
+                }
+                if (!suspended) {
+                    deadline = Math.min(deadline, nextIdleTime);
+                }
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    continue;
+                }
+                if (deadline == Long.MAX_VALUE) {
+                    resetStatistics(System.currentTimeMillis());
+                }
+                try {
+                    Event event = deadline == Long.MAX_VALUE ? eventQueue.take() :
+                            eventQueue.poll(timeout, TimeUnit.MILLISECONDS);
+                    if (event != null) {
+                        events.add(event);
                     }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (renderThread != null) {
+                synchronized (monitor) {
+                    stopped = true;
+                    monitor.notifyAll();
+                }
+                try {
+                    renderThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
             if (interrupted) {
@@ -244,28 +510,184 @@ public class SwingRunner extends JComponent {
             });
         }
 
+        private void requestFrame() {
+            synchronized (monitor) {
+                frameRequested = true;
+                monitor.notifyAll();
+            }
+        }
+
+        /**
+         * <p>Paints frames every <code>paintRatio</code> milliseconds. While suspended, paints only frames
+         * requested by the physics thread.</p>
+         */
+        private void render() {
+            long nextPaintTime = System.currentTimeMillis();
+            while (true) {
+                synchronized (monitor) {
+                    while (!stopped) {
+                        long timeout = nextPaintTime - System.currentTimeMillis();
+                        if (!suspended || frameRequested) {
+                            if (timeout <= 0) {
+                                break;
+                            }
+                        } else {
+                            timeout = 0;
+                        }
+                        try {
+                            monitor.wait(timeout);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    frameRequested = false;
+                }
+                paint(Math.max(1, width), Math.max(1, height));
+                long currentTime = System.currentTimeMillis();
+                long count = (currentTime - nextPaintTime) / paintRatio;
+                nextPaintTime += (1 + count) * paintRatio;
+            }
+        }
+
+        private boolean processEvents(List<Event> events) {
+            if (events.isEmpty()) {
+                return false;
+            }
+            synchronized (monitor) {
+                for (Event event : events) {
+                    event.process(entryPoint);
+                }
+            }
+            events.clear();
+            return true;
+        }
+
+        private void updateStatistics(long currentTime) {
+            long elapsed = currentTime - statisticsStartTime;
+            if (elapsed < 1000) {
+                return;
+            }
+            framesPerSecond = frameCount.getAndSet(0) * 1000f / elapsed;
+            stepsPerSecond = stepCount * 1000f / elapsed;
+            stepCount = 0;
+            statisticsStartTime = currentTime;
+        }
+
+        private void resetStatistics(long currentTime) {
+            framesPerSecond = 0;
+            stepsPerSecond = 0;
+            frameCount.set(0);
+            stepCount = 0;
+            statisticsStartTime = currentTime;
+        }
+
+        /**
+         * <p>Paints a frame into a free buffer. Each buffer remembers the area that changed since it was painted
+         * last time, so that with dirty regions on only that area is painted again.</p>
+         */
         private void paint(int currentWidth, int currentHeight) {
-            BufferedImage image = new BufferedImage(currentWidth, currentHeight,
-                    BufferedImage.TYPE_INT_RGB);
-            Graphics2D awtGraphics = image.createGraphics();
+            int bufferIndex = acquireFrameBuffer(currentWidth, currentHeight);
+            Image image = frameBuffers[bufferIndex];
+            if (takeFrameBufferRestored(bufferIndex)) {
+                pendingFull[bufferIndex] = true;
+            }
+            Graphics2D awtGraphics = (Graphics2D)image.getGraphics();
             awtGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
             awtGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             awtGraphics.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION,
                     RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
-            entryPoint.paint(new AWTGraphics(awtGraphics, new Rectangle(0, 0, currentWidth, currentHeight)));
+            // With physics in another thread the frame is only recorded while the world is locked, and drawing
+            // of images, which takes most of the time, is done after the lock is released
+            boolean batched = batching || threaded;
+            AWTGraphics graphics;
+            boolean full;
+            synchronized (monitor) {
+                full = !computeDirtyRegion();
+                if (!full && dirtyRegion.isEmpty()) {
+                    awtGraphics.dispose();
+                    ++skippedFrameCount;
+                    return;
+                }
+                graphics = createGraphics(awtGraphics, bufferIndex, full, currentWidth, currentHeight);
+                if (batched) {
+                    batchingGraphics.begin(graphics);
+                    entryPoint.paint(batchingGraphics);
+                } else {
+                    entryPoint.paint(graphics);
+                }
+            }
+            if (batched) {
+                batchingGraphics.flush(graphics);
+                batchedImageCount = batchingGraphics.getFlushedImageCount();
+                imageBatchCount = batchingGraphics.getFlushedBatchCount();
+            }
             awtGraphics.dispose();
-            frameBuffer = image;
+            publishFrameBuffer(bufferIndex);
+            frameCount.incrementAndGet();
+            final int x = full ? 0 : (int)dirtyRegion.x;
+            final int y = full ? 0 : (int)dirtyRegion.y;
+            final int width = full ? currentWidth : (int)dirtyRegion.width;
+            final int height = full ? currentHeight : (int)dirtyRegion.height;
             EventQueue.invokeLater(new Runnable() {
                 @Override public void run() {
-                    SwingRunner.this.repaint();
+                    SwingRunner.this.repaint(x, y, width, height);
                 }
             });
         }
 
+        /**
+         * <p>Asks the entry point for the changed area and rounds it to whole pixels. Returns <code>false</code>
+         * if the whole frame has to be painted.</p>
+         */
+        private boolean computeDirtyRegion() {
+            if (!dirtyRegions || !(entryPoint instanceof DirtyRegionProvider)) {
+                return false;
+            }
+            if (!((DirtyRegionProvider)entryPoint).getDirtyRegion(dirtyRegion)) {
+                return false;
+            }
+            if (!dirtyRegion.isEmpty()) {
+                float right = (float)Math.ceil(dirtyRegion.right());
+                float bottom = (float)Math.ceil(dirtyRegion.bottom());
+                dirtyRegion.x = (float)Math.floor(dirtyRegion.x);
+                dirtyRegion.y = (float)Math.floor(dirtyRegion.y);
+                dirtyRegion.width = right - dirtyRegion.x;
+                dirtyRegion.height = bottom - dirtyRegion.y;
+            }
+            return true;
+        }
+
+        /**
+         * <p>Adds the changed area to areas pending in all buffers, then clears the area pending in the given
+         * buffer and prepares graphics clipped to it.</p>
+         */
+        private AWTGraphics createGraphics(Graphics2D awtGraphics, int bufferIndex, boolean full, int width,
+                int height) {
+            for (int i = 0; i < pendingRegions.length; ++i) {
+                if (full) {
+                    pendingFull[i] = true;
+                } else {
+                    pendingRegions[i].union(dirtyRegion);
+                }
+            }
+            Rectangle clip = pendingFull[bufferIndex] ? new Rectangle(0, 0, width, height) :
+                    pendingRegions[bufferIndex].copy();
+            pendingFull[bufferIndex] = false;
+            pendingRegions[bufferIndex].width = 0;
+            pendingRegions[bufferIndex].height = 0;
+            awtGraphics.setColor(Color.black);
+            awtGraphics.fillRect((int)clip.x, (int)clip.y, (int)clip.width, (int)clip.height);
+            return new AWTGraphics(awtGraphics, clip);
+        }
+
         public void setSize(int width, int height) {
             this.width = width;
             this.height = height;
             sizeChanged.set(true);
+            eventQueue.add(new WakeUpEvent());
         }
 
         @Override
@@ -274,6 +696,7 @@ public class SwingRunner extends JComponent {
                 stopped = true;
                 monitor.notifyAll();
             }
+            eventQueue.add(new WakeUpEvent());
         }
 
         public void interrupt() {
@@ -282,6 +705,7 @@ public class SwingRunner extends JComponent {
                 interrupted = true;
                 monitor.notifyAll();
             }
+            eventQueue.add(new WakeUpEvent());
         }
     };
 
@@ -289,6 +713,12 @@ public class SwingRunner extends JComponent {
         void process(EntryPoint entryPoint);
     }
 
+    private static class WakeUpEvent implements Event {
+        @Override
+        public void process(EntryPoint entryPoint) {
+        }
+    }
+
     private static class MouseMotionEvent implements Event {
         private int x;
         private int y;
@@ -0,0 +1,117 @@
+package ru.geobot;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.World;
+
+/**
+ * <p>Immutable positions of the non-static bodies of a world, taken right after a physics step.
+ * Bodies are stored in the order of the world's body list.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class WorldSnapshot {
+    private final long time;
+    private final Body[] bodies;
+    private final float[] x;
+    private final float[] y;
+    private final float[] angle;
+    private Map<Body, Integer> indexes;
+
+    private WorldSnapshot(long time, int count) {
+        this.time = time;
+        bodies = new Body[count];
+        x = new float[count];
+        y = new float[count];
+        angle = new float[count];
+    }
+
+    public static WorldSnapshot take(World world, long time) {
+        int count = 0;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (body.getType() != BodyType.STATIC) {
+                ++count;
+            }
+        }
+        WorldSnapshot snapshot = new WorldSnapshot(time, count);
+        int index = 0;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (body.getType() != BodyType.STATIC) {
+                snapshot.bodies[index] = body;
+                snapshot.x[index] = body.m_xf.p.x;
+                snapshot.y[index] = body.m_xf.p.y;
+                snapshot.angle[index] = body.m_sweep.a;
+                ++index;
+            }
+        }
+        return snapshot;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int size() {
+        return bodies.length;
+    }
+
+    /**
+     * <p>Creates a snapshot of positions interpolated between the previous snapshot and this one. Bodies that
+     * are absent from the previous snapshot keep their positions from this one. Bodies themselves are not
+     * touched, so the world may be stepped while the result is used.</p>
+     *
+     * @param alpha 0 for the previous snapshot, 1 for this one.
+     */
+    public WorldSnapshot interpolate(WorldSnapshot previous, float alpha) {
+        WorldSnapshot result = new WorldSnapshot(time, bodies.length);
+        // The world adds new bodies to the head of its list and never reorders the rest, so bodies
+        // present in both snapshots are matched by walking both of them from the tail
+        int j = previous.bodies.length - 1;
+        for (int i = bodies.length - 1; i >= 0; --i) {
+            Body body = bodies[i];
+            while (j >= 0 && previous.bodies[j] != body) {
+                --j;
+            }
+            result.bodies[i] = body;
+            if (j < 0) {
+                result.x[i] = x[i];
+                result.y[i] = y[i];
+                result.angle[i] = angle[i];
+                continue;
+            }
+            result.x[i] = previous.x[j] + (x[i] - previous.x[j]) * alpha;
+            result.y[i] = previous.y[j] + (y[i] - previous.y[j]) * alpha;
+            result.angle[i] = previous.angle[j] + (angle[i] - previous.angle[j]) * alpha;
+            --j;
+        }
+        return result;
+    }
+
+    /**
+     * <p>Gets the index of the given body in this snapshot, or -1 if the body is absent.</p>
+     */
+    public int indexOf(Body body) {
+        if (indexes == null) {
+            indexes = new IdentityHashMap<>(bodies.length * 2);
+            for (int i = 0; i < bodies.length; ++i) {
+                indexes.put(bodies[i], i);
+            }
+        }
+        Integer index = indexes.get(body);
+        return index != null ? index : -1;
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public float getAngle(int index) {
+        return angle[index];
+    }
+}
@@ -0,0 +1,102 @@
+package ru.geobot.graphics;
+
+import java.util.Arrays;
+
+/**
+ * <p>Keeps the current transform and a stack of saved transforms in a plain <code>float</code> array, so that
+ * pushing and popping transforms does not allocate anything. Subclasses pass the current transform to the
+ * underlying device in {@link #transformChanged()}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public abstract class AbstractGraphics implements Graphics {
+    private static final int ENTRY_SIZE = 6;
+    protected final AffineTransform transform = AffineTransform.identity();
+    private float[] transformStack = new float[ENTRY_SIZE * 16];
+    private int transformStackSize;
+
+    /**
+     * <p>Called each time the current transform changes.</p>
+     */
+    protected abstract void transformChanged();
+
+    @Override
+    public void setTransform(AffineTransform transform) {
+        this.transform.set(transform);
+        transformChanged();
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return transform.copy();
+    }
+
+    @Override
+    public void getTransform(AffineTransform target) {
+        target.set(transform);
+    }
+
+    /**
+     * <p>Gets the determinant of the current transform without copying the transform.</p>
+     */
+    public float getTransformDeterminant() {
+        return transform.getDeterminant();
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        transform.scale(x, y);
+        transformChanged();
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        transform.translate(x, y);
+        transformChanged();
+    }
+
+    @Override
+    public void rotate(float angle) {
+        transform.rotate(angle);
+        transformChanged();
+    }
+
+    @Override
+    public void transform(AffineTransform transform) {
+        this.transform.transform(transform);
+        transformChanged();
+    }
+
+    @Override
+    public void pushTransform() {
+        if (transformStackSize == transformStack.length) {
+            transformStack = Arrays.copyOf(transformStack, transformStack.length * 2);
+        }
+        float[] stack = transformStack;
+        int offset = transformStackSize;
+        stack[offset] = transform.a;
+        stack[offset + 1] = transform.b;
+        stack[offset + 2] = transform.c;
+        stack[offset + 3] = transform.d;
+        stack[offset + 4] = transform.e;
+        stack[offset + 5] = transform.f;
+        transformStackSize += ENTRY_SIZE;
+    }
+
+    @Override
+    public void popTransform() {
+        if (transformStackSize == 0) {
+            throw new IllegalStateException("Transform stack is empty");
+        }
+        transformStackSize -= ENTRY_SIZE;
+        float[] stack = transformStack;
+        int offset = transformStackSize;
+        transform.a = stack[offset];
+        transform.b = stack[offset + 1];
+        transform.c = stack[offset + 2];
+        transform.d = stack[offset + 3];
+        transform.e = stack[offset + 4];
+        transform.f = stack[offset + 5];
+        transformChanged();
+    }
+}
@@ -52,6 +52,15 @@ public class AffineTransform {
         f = newF;
     }
 
+    public void set(AffineTransform other) {
+        a = other.a;
+        b = other.b;
+        c = other.c;
+        d = other.d;
+        e = other.e;
+        f = other.f;
+    }
+
     public AffineTransform copy() {
         AffineTransform copy = new AffineTransform();
         copy.a = a;
@@ -0,0 +1,441 @@
+package ru.geobot.graphics;
+
+import java.util.Arrays;
+import ru.geobot.resources.BatchableImage;
+import ru.geobot.resources.Image;
+
+/**
+ * <p>Records drawing commands together with their transforms instead of executing them, and later flushes them
+ * into another {@link Graphics} in bulk. Before flushing, image draws that do not overlap other images painted
+ * between them are moved next to draws of the same image with the same alpha, so that runs of equal images
+ * can be drawn by {@link BatchableImage#drawBatch(Graphics, float[], int, float)} at once. Commands other than
+ * image draws are never reordered and images are never moved across them.</p>
+ *
+ * <p>Images take part in batching only if their {@link Image#draw(Graphics)} recognizes this class and calls
+ * {@link #drawImage(Image, float)}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class BatchingGraphics extends AbstractGraphics {
+    private static final int SET_COLOR = 0;
+    private static final int SET_STROKE_WIDTH = 1;
+    private static final int FILL_RECTANGLE = 2;
+    private static final int MOVE_TO = 3;
+    private static final int LINE_TO = 4;
+    private static final int BEZIER_CURVE_TO = 5;
+    private static final int QUADRATIC_CURVE_TO = 6;
+    private static final int STROKE = 7;
+    private static final int FILL = 8;
+    private static final int DRAW_ARC = 9;
+    private static final int DRAW_ELLIPSE = 10;
+    private static final int FILL_ELLIPSE = 11;
+    private static final int CLIP = 12;
+    private static final int POP_CLIP = 13;
+    private static final int DRAW_IMAGE = 14;
+    private static final int MAX_LOOKBEHIND = 64;
+    private static final float BOUNDS_MARGIN = 1;
+    private Graphics target;
+    private int[] opcodes = new int[256];
+    private float[] transforms = new float[256 * 6];
+    private float[] arguments = new float[256 * 6];
+    private float[] bounds = new float[256 * 4];
+    private Image[] images = new Image[256];
+    private int[] order = new int[256];
+    private int commandCount;
+    private float[] batchTransforms = new float[32 * 6];
+    private AffineTransform targetTransform = new AffineTransform();
+    private AffineTransform savedTransform = new AffineTransform();
+    private Color color = new Color();
+    private Rectangle rectangle = new Rectangle(0, 0, 0, 0);
+    private int flushedCommandCount;
+    private int flushedImageCount;
+    private int flushedBatchCount;
+
+    /**
+     * <p>Discards recorded commands and starts recording with the current transform of the given graphics.</p>
+     */
+    public void begin(Graphics target) {
+        clear();
+        this.target = target;
+        target.getTransform(transform);
+    }
+
+    public void clear() {
+        Arrays.fill(images, 0, commandCount, null);
+        commandCount = 0;
+    }
+
+    public int getRecordedCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * <p>Gets the number of commands executed by the last {@link #flush(Graphics)}.</p>
+     */
+    public int getFlushedCommandCount() {
+        return flushedCommandCount;
+    }
+
+    /**
+     * <p>Gets the number of images drawn by the last {@link #flush(Graphics)}.</p>
+     */
+    public int getFlushedImageCount() {
+        return flushedImageCount;
+    }
+
+    /**
+     * <p>Gets the number of runs of equal images the images drawn by the last {@link #flush(Graphics)}
+     * were merged into.</p>
+     */
+    public int getFlushedBatchCount() {
+        return flushedBatchCount;
+    }
+
+    @Override
+    protected void transformChanged() {
+    }
+
+    public void drawImage(Image image, float alpha) {
+        int index = record(DRAW_IMAGE);
+        images[index] = image;
+        arguments[index * 6] = alpha;
+        float w = image.getWidth();
+        float h = image.getHeight();
+        AffineTransform t = transform;
+        float minX = t.e;
+        float maxX = t.e;
+        float minY = t.f;
+        float maxY = t.f;
+        float x = t.a * w + t.e;
+        float y = t.b * w + t.f;
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+        x = t.c * h + t.e;
+        y = t.d * h + t.f;
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+        x = t.a * w + t.c * h + t.e;
+        y = t.b * w + t.d * h + t.f;
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+        bounds[index * 4] = minX - BOUNDS_MARGIN;
+        bounds[index * 4 + 1] = minY - BOUNDS_MARGIN;
+        bounds[index * 4 + 2] = maxX + BOUNDS_MARGIN;
+        bounds[index * 4 + 3] = maxY + BOUNDS_MARGIN;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        int index = record(SET_COLOR);
+        arguments[index * 6] = color.r;
+        arguments[index * 6 + 1] = color.g;
+        arguments[index * 6 + 2] = color.b;
+        arguments[index * 6 + 3] = color.a;
+    }
+
+    @Override
+    public void setStrokeWidth(float width) {
+        int index = record(SET_STROKE_WIDTH);
+        arguments[index * 6] = width;
+    }
+
+    @Override
+    public void fillRectangle(float x, float y, float w, float h) {
+        record(FILL_RECTANGLE, x, y, w, h);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        record(MOVE_TO, x, y, 0, 0);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        record(LINE_TO, x, y, 0, 0);
+    }
+
+    @Override
+    public void bezierCurveTo(float cp1x, float cp1y, float cp2x, float cp2y, float x, float y) {
+        int index = record(BEZIER_CURVE_TO, cp1x, cp1y, cp2x, cp2y);
+        arguments[index * 6 + 4] = x;
+        arguments[index * 6 + 5] = y;
+    }
+
+    @Override
+    public void quadraticCurveTo(float cpx, float cpy, float x, float y) {
+        record(QUADRATIC_CURVE_TO, cpx, cpy, x, y);
+    }
+
+    @Override
+    public void stroke() {
+        record(STROKE);
+    }
+
+    @Override
+    public void fill() {
+        record(FILL);
+    }
+
+    @Override
+    public void drawArc(float x, float y, float w, float h, float startAngle, float endAngle) {
+        int index = record(DRAW_ARC, x, y, w, h);
+        arguments[index * 6 + 4] = startAngle;
+        arguments[index * 6 + 5] = endAngle;
+    }
+
+    @Override
+    public void drawEllipse(float x, float y, float w, float h) {
+        record(DRAW_ELLIPSE, x, y, w, h);
+    }
+
+    @Override
+    public void fillEllipse(float x, float y, float w, float h) {
+        record(FILL_ELLIPSE, x, y, w, h);
+    }
+
+    @Override
+    public void clip(Rectangle rectangle) {
+        record(CLIP, rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+
+    @Override
+    public void popClip() {
+        record(POP_CLIP);
+    }
+
+    /**
+     * <p>Creates a layer using the graphics passed to {@link #begin(Graphics)}. Painting into the layer is not
+     * recorded.</p>
+     */
+    @Override
+    public Layer createLayer(int width, int height, boolean opaque) {
+        return target != null ? target.createLayer(width, height, opaque) : null;
+    }
+
+    private int record(int opcode, float x, float y, float z, float w) {
+        int index = record(opcode);
+        float[] args = arguments;
+        args[index * 6] = x;
+        args[index * 6 + 1] = y;
+        args[index * 6 + 2] = z;
+        args[index * 6 + 3] = w;
+        return index;
+    }
+
+    private int record(int opcode) {
+        int index = commandCount;
+        if (index == opcodes.length) {
+            int capacity = index * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            transforms = Arrays.copyOf(transforms, capacity * 6);
+            arguments = Arrays.copyOf(arguments, capacity * 6);
+            bounds = Arrays.copyOf(bounds, capacity * 4);
+            images = Arrays.copyOf(images, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+        opcodes[index] = opcode;
+        AffineTransform t = transform;
+        float[] target = transforms;
+        target[index * 6] = t.a;
+        target[index * 6 + 1] = t.b;
+        target[index * 6 + 2] = t.c;
+        target[index * 6 + 3] = t.d;
+        target[index * 6 + 4] = t.e;
+        target[index * 6 + 5] = t.f;
+        commandCount = index + 1;
+        return index;
+    }
+
+    /**
+     * <p>Executes recorded commands on the given graphics and discards them. The transform of the target
+     * graphics is restored afterwards.</p>
+     */
+    public void flush(Graphics target) {
+        sort();
+        target.getTransform(savedTransform);
+        boolean transformKnown = false;
+        int imageCount = 0;
+        int batchCount = 0;
+        int i = 0;
+        while (i < commandCount) {
+            int index = order[i];
+            int opcode = opcodes[index];
+            if (opcode == DRAW_IMAGE) {
+                Image image = images[index];
+                float alpha = arguments[index * 6];
+                int end = i + 1;
+                while (end < commandCount && isSameImage(order[end], image, alpha)) {
+                    ++end;
+                }
+                imageCount += end - i;
+                ++batchCount;
+                if (image instanceof BatchableImage) {
+                    drawBatch((BatchableImage)image, target, i, end, alpha);
+                    transformKnown = false;
+                } else {
+                    for (int j = i; j < end; ++j) {
+                        transformKnown = applyTransform(target, order[j], transformKnown);
+                        if (alpha >= 1) {
+                            image.draw(target);
+                        } else {
+                            image.draw(target, alpha);
+                        }
+                    }
+                }
+                i = end;
+                continue;
+            }
+            float[] args = arguments;
+            int offset = index * 6;
+            switch (opcode) {
+                case SET_COLOR:
+                    color.r = (short)args[offset];
+                    color.g = (short)args[offset + 1];
+                    color.b = (short)args[offset + 2];
+                    color.a = (short)args[offset + 3];
+                    target.setColor(color);
+                    break;
+                case SET_STROKE_WIDTH:
+                    target.setStrokeWidth(args[offset]);
+                    break;
+                default:
+                    transformKnown = applyTransform(target, index, transformKnown);
+                    execute(target, opcode, offset);
+                    break;
+            }
+            ++i;
+        }
+        target.setTransform(savedTransform);
+        flushedCommandCount = commandCount;
+        flushedImageCount = imageCount;
+        flushedBatchCount = batchCount;
+        this.target = null;
+        clear();
+    }
+
+    private void execute(Graphics target, int opcode, int offset) {
+        float[] args = arguments;
+        switch (opcode) {
+            case FILL_RECTANGLE:
+                target.fillRectangle(args[offset], args[offset + 1], args[offset + 2], args[offset + 3]);
+                break;
+            case MOVE_TO:
+                target.moveTo(args[offset], args[offset + 1]);
+                break;
+            case LINE_TO:
+                target.lineTo(args[offset], args[offset + 1]);
+                break;
+            case BEZIER_CURVE_TO:
+                target.bezierCurveTo(args[offset], args[offset + 1], args[offset + 2], args[offset + 3],
+                        args[offset + 4], args[offset + 5]);
+                break;
+            case QUADRATIC_CURVE_TO:
+                target.quadraticCurveTo(args[offset], args[offset + 1], args[offset + 2], args[offset + 3]);
+                break;
+            case STROKE:
+                target.stroke();
+                break;
+            case FILL:
+                target.fill();
+                break;
+            case DRAW_ARC:
+                target.drawArc(args[offset], args[offset + 1], args[offset + 2], args[offset + 3],
+                        args[offset + 4], args[offset + 5]);
+                break;
+            case DRAW_ELLIPSE:
+                target.drawEllipse(args[offset], args[offset + 1], args[offset + 2], args[offset + 3]);
+                break;
+            case FILL_ELLIPSE:
+                target.fillEllipse(args[offset], args[offset + 1], args[offset + 2], args[offset + 3]);
+                break;
+            case CLIP:
+                rectangle.x = args[offset];
+                rectangle.y = args[offset + 1];
+                rectangle.width = args[offset + 2];
+                rectangle.height = args[offset + 3];
+                target.clip(rectangle);
+                break;
+            case POP_CLIP:
+                target.popClip();
+                break;
+        }
+    }
+
+    private void drawBatch(BatchableImage image, Graphics target, int start, int end, float alpha) {
+        int count = end - start;
+        if (batchTransforms.length < count * 6) {
+            batchTransforms = new float[Math.max(batchTransforms.length * 2, count * 6)];
+        }
+        for (int i = 0; i < count; ++i) {
+            System.arraycopy(transforms, order[start + i] * 6, batchTransforms, i * 6, 6);
+        }
+        image.drawBatch(target, batchTransforms, count, alpha);
+    }
+
+    private boolean applyTransform(Graphics target, int index, boolean transformKnown) {
+        float[] source = transforms;
+        int offset = index * 6;
+        AffineTransform t = targetTransform;
+        if (transformKnown && t.a == source[offset] && t.b == source[offset + 1] && t.c == source[offset + 2] &&
+                t.d == source[offset + 3] && t.e == source[offset + 4] && t.f == source[offset + 5]) {
+            return true;
+        }
+        t.a = source[offset];
+        t.b = source[offset + 1];
+        t.c = source[offset + 2];
+        t.d = source[offset + 3];
+        t.e = source[offset + 4];
+        t.f = source[offset + 5];
+        target.setTransform(t);
+        return true;
+    }
+
+    private boolean isSameImage(int index, Image image, float alpha) {
+        return opcodes[index] == DRAW_IMAGE && images[index] == image && arguments[index * 6] == alpha;
+    }
+
+    /**
+     * <p>Fills the execution order. Each image draw is moved back right after the latest draw of the same
+     * image with the same alpha, if it does not overlap any image it has to be moved across.</p>
+     */
+    private void sort() {
+        int size = 0;
+        for (int i = 0; i < commandCount; ++i) {
+            int position = size;
+            if (opcodes[i] == DRAW_IMAGE) {
+                Image image = images[i];
+                float alpha = arguments[i * 6];
+                int limit = Math.max(0, size - MAX_LOOKBEHIND);
+                for (int j = size - 1; j >= limit; --j) {
+                    int other = order[j];
+                    if (opcodes[other] != DRAW_IMAGE) {
+                        break;
+                    }
+                    if (images[other] == image && arguments[other * 6] == alpha) {
+                        position = j + 1;
+                        break;
+                    }
+                    if (overlaps(other, i)) {
+                        break;
+                    }
+                }
+            }
+            System.arraycopy(order, position, order, position + 1, size - position);
+            order[position] = i;
+            ++size;
+        }
+    }
+
+    private boolean overlaps(int first, int second) {
+        float[] b = bounds;
+        int p = first * 4;
+        int q = second * 4;
+        return b[p] < b[q + 2] && b[q] < b[p + 2] && b[p + 1] < b[q + 3] && b[q + 1] < b[p + 3];
+    }
+}
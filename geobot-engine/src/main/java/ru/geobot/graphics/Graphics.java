@@ -13,6 +13,11 @@ public interface Graphics {
 
     AffineTransform getTransform();
 
+    /**
+     * <p>Copies the current transform into the given object, which the caller can reuse between calls.</p>
+     */
+    void getTransform(AffineTransform target);
+
     void scale(float x, float y);
 
     void translate(float x, float y);
@@ -48,4 +53,11 @@ public interface Graphics {
     void clip(Rectangle rectangle);
 
     void popClip();
+
+    /**
+     * <p>Creates a layer compatible with this graphics, or returns <code>null</code> if layers are not
+     * supported. Pixels of an opaque layer have no alpha channel, which makes drawing it cheaper, so
+     * the whole layer should be covered when painting into it.</p>
+     */
+    Layer createLayer(int width, int height, boolean opaque);
 }
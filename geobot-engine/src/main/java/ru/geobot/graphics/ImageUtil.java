@@ -35,18 +35,18 @@ public class ImageUtil implements Image {
     }
 
     public void draw(Graphics graphics, float x, float y, float w, float h) {
-        AffineTransform transform = graphics.getTransform();
+        graphics.pushTransform();
         graphics.translate(x, y);
         graphics.scale(w / getWidth(), h / getHeight());
         draw(graphics);
-        graphics.setTransform(transform);
+        graphics.popTransform();
     }
 
     public void draw(Graphics graphics, float x, float y, float w, float h, float alpha) {
-        AffineTransform transform = graphics.getTransform();
+        graphics.pushTransform();
         graphics.translate(x, y);
         graphics.scale(w / getWidth(), h / getHeight());
         draw(graphics, alpha);
-        graphics.setTransform(transform);
+        graphics.popTransform();
     }
 }
@@ -0,0 +1,19 @@
+package ru.geobot.graphics;
+
+import ru.geobot.resources.Image;
+
+/**
+ * <p>An offscreen raster created by {@link Graphics#createLayer(int, int, boolean)}. Something painted once into a layer
+ * can be drawn many times as an image, one pixel of the layer per unit of the drawing transform.</p>
+ *
+ * @author Alexey Andreev
+ */
+public interface Layer extends Image {
+    /**
+     * <p>Clears the layer and returns graphics that paints into it until {@link #end()} is called. The initial
+     * transform of the graphics maps one unit to one pixel of the layer.</p>
+     */
+    Graphics begin();
+
+    void end();
+}
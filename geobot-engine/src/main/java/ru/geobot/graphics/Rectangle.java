@@ -37,6 +37,36 @@ public class Rectangle {
         return y + height;
     }
 
+    public boolean isEmpty() {
+        return width <= 0 || height <= 0;
+    }
+
+    public void set(Rectangle other) {
+        x = other.x;
+        y = other.y;
+        width = other.width;
+        height = other.height;
+    }
+
+    /**
+     * <p>Extends this rectangle to contain the other one. Empty rectangles do not contain anything.</p>
+     */
+    public void union(Rectangle other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (isEmpty()) {
+            set(other);
+            return;
+        }
+        float right = Math.max(right(), other.right());
+        float bottom = Math.max(bottom(), other.bottom());
+        x = Math.min(x, other.x);
+        y = Math.min(y, other.y);
+        width = right - x;
+        height = bottom - y;
+    }
+
     public boolean contains(float x, float y) {
         x -= this.x;
         y -= this.y;
@@ -0,0 +1,19 @@
+package ru.geobot.resources;
+
+import ru.geobot.graphics.Graphics;
+
+/**
+ * <p>An image that can draw several copies of itself at once. Used by
+ * {@link ru.geobot.graphics.BatchingGraphics} to draw consecutive copies of the same image without
+ * setting up the transform of the target graphics for each of them.</p>
+ *
+ * @author Alexey Andreev
+ */
+public interface BatchableImage extends Image {
+    /**
+     * <p>Draws <code>count</code> copies of the image. Each copy takes six elements of <code>transforms</code>
+     * in the same order as fields of {@link ru.geobot.graphics.AffineTransform}. The transform of the
+     * target graphics after this call is undefined.</p>
+     */
+    void drawBatch(Graphics target, float[] transforms, int count, float alpha);
+}
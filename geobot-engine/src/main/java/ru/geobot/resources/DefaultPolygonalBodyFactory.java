@@ -1,32 +1,67 @@
 package ru.geobot.resources;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.common.Vec2;
 
 /**
+ * <p>Keeps shapes created for each scale, since bodies of the same resource are usually created at the same
+ * scale, and fixtures copy shapes anyway. No more than {@link #MAX_SCALES} scales are kept, and all of them
+ * are dropped when another one is asked for. {@link #create(float)} is synchronized, since the factory is
+ * shared by all threads that load the resource.</p>
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
 class DefaultPolygonalBodyFactory implements PolygonalBodyFactory {
+    /**
+     * <p>The largest number of scales whose shapes are kept.</p>
+     */
+    public static final int MAX_SCALES = 8;
     private PolygonShape[] prototype;
+    private float[][] vertices;
+    private final Map<Float, PolygonShape[]> scaledShapes = new HashMap<>();
 
     public DefaultPolygonalBodyFactory(PolygonShape[] prototype) {
         this.prototype = prototype;
+        vertices = new float[prototype.length][];
+        for (int i = 0; i < prototype.length; ++i) {
+            float[] coords = new float[prototype[i].getVertexCount() * 2];
+            for (int j = 0; j < prototype[i].getVertexCount(); ++j) {
+                Vec2 vertex = prototype[i].getVertex(j);
+                coords[j * 2] = vertex.x;
+                coords[j * 2 + 1] = vertex.y;
+            }
+            vertices[i] = coords;
+        }
     }
 
     @Override
-    public PolygonShape[] create(float scale) {
-        PolygonShape[] result = new PolygonShape[prototype.length];
+    public synchronized PolygonShape[] create(float scale) {
+        PolygonShape[] result = scaledShapes.get(scale);
+        if (result != null) {
+            return result;
+        }
+        result = new PolygonShape[prototype.length];
         for (int i = 0; i < result.length; ++i) {
             PolygonShape copy = new PolygonShape();
             result[i] = copy;
-            Vec2[] vertices = prototype[i].getVertices();
-            Vec2[] verticesCopy = new Vec2[vertices.length];
+            Vec2[] prototypeVertices = prototype[i].getVertices();
+            Vec2[] verticesCopy = new Vec2[prototypeVertices.length];
             for (int j = 0; j < prototype[i].getVertexCount(); ++j) {
-                verticesCopy[j] = vertices[j].mul(scale);
+                verticesCopy[j] = prototypeVertices[j].mul(scale);
             }
             copy.set(verticesCopy, prototype[i].getVertexCount());
         }
+        if (scaledShapes.size() >= MAX_SCALES) {
+            scaledShapes.clear();
+        }
+        scaledShapes.put(scale, result);
         return result;
     }
+
+    @Override
+    public float[][] getVertices() {
+        return vertices;
+    }
 }
@@ -0,0 +1,371 @@
+package ru.geobot.resources;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * <p>Keeps decoded and downscaled images in a directory, so that they are not decoded and scaled again on the
+ * next start. Each resource is stored in its own file named after a hash of the resource path. The file holds
+ * a hash of the source image, so that a changed image is detected and regenerated. Pixels are stored exactly
+ * as they lie in rasters of the images.</p>
+ *
+ * <p>The cache is best effort. Any failure to read or to write a file is treated as a cache miss.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ImageCache {
+    private static final int MAGIC = 0x47424943;
+    private static final int VERSION = 2;
+    private static final int BYTE_DATA = 0;
+    private static final int INT_DATA = 1;
+    private static final int CHUNK_SIZE = 16384;
+    private File directory;
+
+    public ImageCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public static byte[] hash(byte[] data) {
+        return createDigest().digest(data);
+    }
+
+    /**
+     * <p>Reads images stored for the given resource. Returns <code>null</code> if there is nothing stored or
+     * if the stored images were made from another source.</p>
+     */
+    public Entry read(String resourceName, byte[] sourceHash) {
+        File file = getFile(resourceName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            if (!readHeader(channel, sourceHash)) {
+                return null;
+            }
+            int[] metadata = readMetadata(channel);
+            int count = readImageCount(channel);
+            if (metadata == null || count < 0) {
+                return null;
+            }
+            BufferedImage[] images = new BufferedImage[count];
+            for (int i = 0; i < images.length; ++i) {
+                images[i] = readImage(channel);
+                if (images[i] == null) {
+                    return null;
+                }
+            }
+            return new Entry(metadata, images);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>Reads one of images stored for the given resource, skipping the others.</p>
+     */
+    public BufferedImage read(String resourceName, byte[] sourceHash, int index) {
+        File file = getFile(resourceName);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            if (!readHeader(channel, sourceHash) || readMetadata(channel) == null) {
+                return null;
+            }
+            if (index >= readImageCount(channel)) {
+                return null;
+            }
+            for (int i = 0; i < index; ++i) {
+                ByteBuffer header = readFully(channel, 20);
+                header.position(12);
+                int dataType = header.getInt();
+                long length = header.getInt() & 0xFFFFFFFFL;
+                channel.position(channel.position() + (dataType == INT_DATA ? length * 4 : length));
+            }
+            return readImage(channel);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>Checks the header of a file. Returns <code>false</code> if the file has another format or is made
+     * from another source.</p>
+     */
+    private boolean readHeader(FileChannel channel, byte[] sourceHash) throws IOException {
+        ByteBuffer buffer = readFully(channel, 12);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != sourceHash.length) {
+            return false;
+        }
+        byte[] storedHash = new byte[sourceHash.length];
+        readFully(channel, storedHash.length).get(storedHash);
+        return Arrays.equals(storedHash, sourceHash);
+    }
+
+    private int[] readMetadata(FileChannel channel) throws IOException {
+        int length = readFully(channel, 4).getInt();
+        if (length < 0 || length > remaining(channel) / 4) {
+            return null;
+        }
+        int[] metadata = new int[length];
+        readFully(channel, length * 4).asIntBuffer().get(metadata);
+        return metadata;
+    }
+
+    private int readImageCount(FileChannel channel) throws IOException {
+        int count = readFully(channel, 4).getInt();
+        return count >= 0 && count <= remaining(channel) / 20 ? count : -1;
+    }
+
+    /**
+     * <p>Reads an image into its raster row by row. The header is checked against the size of the file
+     * before the image is created, so a damaged file never makes the image larger than the file.</p>
+     */
+    private BufferedImage readImage(FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 20);
+        int type = header.getInt();
+        int width = header.getInt();
+        int height = header.getInt();
+        int dataType = header.getInt();
+        int length = header.getInt();
+        if (width <= 0 || height <= 0 || length <= 0) {
+            return null;
+        }
+        long pixels = (long)width * height;
+        if (dataType == INT_DATA) {
+            if (length != pixels || length > remaining(channel) / 4) {
+                return null;
+            }
+        } else if (dataType == BYTE_DATA) {
+            if (length % pixels != 0 || length / pixels > 4 || length > remaining(channel)) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        BufferedImage image = new BufferedImage(width, height, type);
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        if (dataBuffer.getNumBanks() != 1 || dataBuffer.getSize() != length) {
+            return null;
+        }
+        // Rows are set through the raster rather than written to its array, since taking the array would stop
+        // Java2D from accelerating the image
+        WritableRaster raster = image.getRaster();
+        int rowSize = width * raster.getNumDataElements();
+        int rowsPerChunk = Math.max(1, Math.min(height, CHUNK_SIZE / rowSize));
+        if (dataType == BYTE_DATA && dataBuffer instanceof DataBufferByte) {
+            int[] elementOffsets = getElementOffsets(raster);
+            if (elementOffsets == null) {
+                return null;
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(rowsPerChunk * rowSize);
+            byte[] elements = new byte[rowsPerChunk * rowSize];
+            for (int y = 0; y < height;) {
+                int rows = Math.min(height - y, rowsPerChunk);
+                chunk.clear();
+                chunk.limit(rows * rowSize);
+                readFully(channel, chunk);
+                for (int i = 0; i < rows * rowSize; i += elementOffsets.length) {
+                    for (int j = 0; j < elementOffsets.length; ++j) {
+                        elements[i + j] = chunk.get(i + elementOffsets[j]);
+                    }
+                }
+                raster.setDataElements(0, y, width, rows, elements);
+                y += rows;
+            }
+        } else if (dataType == INT_DATA && dataBuffer instanceof DataBufferInt) {
+            ByteBuffer chunk = ByteBuffer.allocate(rowsPerChunk * rowSize * 4);
+            int[] elements = new int[rowsPerChunk * rowSize];
+            for (int y = 0; y < height;) {
+                int rows = Math.min(height - y, rowsPerChunk);
+                chunk.clear();
+                chunk.limit(rows * rowSize * 4);
+                readFully(channel, chunk);
+                chunk.asIntBuffer().get(elements, 0, rows * rowSize);
+                raster.setDataElements(0, y, width, rows, elements);
+                y += rows;
+            }
+        } else {
+            return null;
+        }
+        return image;
+    }
+
+    /**
+     * <p>Gets offsets of data elements of a pixel within the pixel as it lies in the array. The raster takes and
+     * gives elements in the order of its bands, which differs from the order in the array for types like
+     * {@link BufferedImage#TYPE_4BYTE_ABGR}.</p>
+     */
+    private static int[] getElementOffsets(WritableRaster raster) {
+        int count = raster.getNumDataElements();
+        if (count == 1) {
+            return new int[] { 0 };
+        }
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel)) {
+            return null;
+        }
+        ComponentSampleModel sampleModel = (ComponentSampleModel)raster.getSampleModel();
+        int[] offsets = sampleModel.getBandOffsets();
+        if (sampleModel.getPixelStride() != count || offsets.length != count) {
+            return null;
+        }
+        return offsets;
+    }
+
+    private static long remaining(FileChannel channel) throws IOException {
+        return channel.size() - channel.position();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        readFully(channel, buffer);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * <p>Stores images for the given resource along with some integers that describe them. Images of custom
+     * types and images with pixel layouts other than a single array of bytes or integers are not stored.</p>
+     */
+    public void write(String resourceName, byte[] sourceHash, int[] metadata, BufferedImage[] images) {
+        ByteBuffer header = ByteBuffer.allocate(20 + sourceHash.length + metadata.length * 4);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sourceHash.length).put(sourceHash);
+        header.putInt(metadata.length);
+        for (int value : metadata) {
+            header.putInt(value);
+        }
+        header.putInt(images.length);
+        header.flip();
+        File file = getFile(resourceName);
+        File tempFile = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                return;
+            }
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            try (RandomAccessFile output = new RandomAccessFile(tempFile, "rw")) {
+                FileChannel channel = output.getChannel();
+                writeFully(channel, header);
+                for (BufferedImage image : images) {
+                    ByteBuffer imageBuffer = encodeImage(image);
+                    if (imageBuffer == null) {
+                        return;
+                    }
+                    writeFully(channel, imageBuffer);
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            // The image is going to be generated again next time
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private ByteBuffer encodeImage(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_CUSTOM) {
+            return null;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int size = dataBuffer.getSize();
+        // Only rasters that own a whole array of one element per sample are stored, as new images have them.
+        // Elements are taken one by one, since taking the array would stop Java2D from accelerating the image
+        if (raster.getParent() != null || dataBuffer.getNumBanks() != 1 ||
+                size != width * height * raster.getNumDataElements()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        if (dataBuffer instanceof DataBufferByte) {
+            buffer = ByteBuffer.allocate(20 + size);
+            buffer.putInt(image.getType()).putInt(width).putInt(height).putInt(BYTE_DATA).putInt(size);
+            for (int i = 0; i < size; ++i) {
+                buffer.put((byte)dataBuffer.getElem(i));
+            }
+        } else if (dataBuffer instanceof DataBufferInt) {
+            buffer = ByteBuffer.allocate(20 + size * 4);
+            buffer.putInt(image.getType()).putInt(width).putInt(height).putInt(INT_DATA).putInt(size);
+            for (int i = 0; i < size; ++i) {
+                buffer.putInt(dataBuffer.getElem(i));
+            }
+        } else {
+            return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private File getFile(String resourceName) {
+        byte[] nameHash = hash(resourceName.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : nameHash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new File(directory, sb.append(".img").toString());
+    }
+
+    public static class Entry {
+        public final int[] metadata;
+        public final BufferedImage[] images;
+
+        public Entry(int[] metadata, BufferedImage[] images) {
+            this.metadata = metadata;
+            this.images = images;
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
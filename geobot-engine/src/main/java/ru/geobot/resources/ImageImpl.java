@@ -5,72 +5,130 @@ import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import ru.geobot.AWTGraphics;
-import ru.geobot.graphics.AffineTransform;
+import ru.geobot.graphics.BatchingGraphics;
 import ru.geobot.graphics.Graphics;
 
 /**
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
-class ImageImpl implements Image {
+class ImageImpl implements BatchableImage {
+    private static final java.awt.geom.AffineTransform IDENTITY = new java.awt.geom.AffineTransform();
     private BufferedImage[] scaledImages;
+    private final int width;
+    private final int height;
+    private final int scaleCount;
 
     public ImageImpl(BufferedImage[] scaledImages) {
         this.scaledImages = scaledImages;
+        this.width = scaledImages[0].getWidth();
+        this.height = scaledImages[0].getHeight();
+        this.scaleCount = scaledImages.length;
+    }
+
+    protected ImageImpl(int width, int height, int scaleCount) {
+        this.width = width;
+        this.height = height;
+        this.scaleCount = scaleCount;
+    }
+
+    /**
+     * <p>Gets the image scaled down by <code>2<sup>index</sup></code>.</p>
+     */
+    protected BufferedImage getScale(int index) {
+        return scaledImages[index];
     }
 
     @Override
     public void draw(Graphics graphics) {
-        AffineTransform transformation = graphics.getTransform();
-        double factor = Math.sqrt(Math.abs(transformation.getDeterminant()));
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, 1);
+            return;
+        }
+        graphics.pushTransform();
+        double factor = Math.sqrt(Math.abs(((AWTGraphics)graphics).getTransformDeterminant()));
         int index = 0;
         int intFactor = 1;
-        while (index < scaledImages.length - 1 && factor < 0.5) {
+        while (index < scaleCount - 1 && factor < 0.5) {
             factor *= 2;
             intFactor *= 2;
             ++index;
         }
-        BufferedImage original = scaledImages[0];
-        BufferedImage scaled = scaledImages[index];
+        BufferedImage scaled = getScale(index);
         graphics.scale(intFactor, intFactor);
-        graphics.scale(original.getWidth() / (float)(scaled.getWidth() * intFactor),
-                original.getHeight() / (float)(scaled.getHeight() * intFactor));
-        ((AWTGraphics)graphics).getInnerGraphics().drawRenderedImage(scaled,
-                new java.awt.geom.AffineTransform());
-        graphics.setTransform(transformation);
+        graphics.scale(width / (float)(scaled.getWidth() * intFactor),
+                height / (float)(scaled.getHeight() * intFactor));
+        ((AWTGraphics)graphics).getInnerGraphics().drawRenderedImage(scaled, IDENTITY);
+        graphics.popTransform();
     }
 
     @Override
     public void draw(Graphics graphics, float alpha) {
-        AffineTransform transformation = graphics.getTransform();
-        double factor = Math.sqrt(Math.abs(transformation.getDeterminant()));
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, alpha);
+            return;
+        }
+        graphics.pushTransform();
+        double factor = Math.sqrt(Math.abs(((AWTGraphics)graphics).getTransformDeterminant()));
         int index = 0;
         int intFactor = 1;
-        while (index < scaledImages.length - 1 && factor < 0.5) {
+        while (index < scaleCount - 1 && factor < 0.5) {
             factor *= 2;
             intFactor *= 2;
             ++index;
         }
-        BufferedImage original = scaledImages[0];
-        BufferedImage scaled = scaledImages[index];
+        BufferedImage scaled = getScale(index);
         graphics.scale(intFactor, intFactor);
-        graphics.scale(original.getWidth() / (float)(scaled.getWidth() * intFactor),
-                original.getHeight() / (float)(scaled.getHeight() * intFactor));
+        graphics.scale(width / (float)(scaled.getWidth() * intFactor),
+                height / (float)(scaled.getHeight() * intFactor));
         Graphics2D innerGraphics = ((AWTGraphics)graphics).getInnerGraphics();
         Composite oldComposite = innerGraphics.getComposite();
         innerGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-        innerGraphics.drawRenderedImage(scaled, new java.awt.geom.AffineTransform());
+        innerGraphics.drawRenderedImage(scaled, IDENTITY);
         innerGraphics.setComposite(oldComposite);
-        graphics.setTransform(transformation);
+        graphics.popTransform();
+    }
+
+    @Override
+    public void drawBatch(Graphics target, float[] transforms, int count, float alpha) {
+        AWTGraphics awtGraphics = (AWTGraphics)target;
+        Graphics2D innerGraphics = awtGraphics.getInnerGraphics();
+        Composite oldComposite = null;
+        if (alpha < 1) {
+            oldComposite = innerGraphics.getComposite();
+            innerGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        }
+        innerGraphics.setTransform(IDENTITY);
+        for (int i = 0; i < count; ++i) {
+            int offset = i * 6;
+            float a = transforms[offset];
+            float b = transforms[offset + 1];
+            float c = transforms[offset + 2];
+            float d = transforms[offset + 3];
+            double factor = Math.sqrt(Math.abs(a * d - b * c));
+            int index = 0;
+            while (index < scaleCount - 1 && factor < 0.5) {
+                factor *= 2;
+                ++index;
+            }
+            BufferedImage scaled = getScale(index);
+            float scaleX = width / (float)scaled.getWidth();
+            float scaleY = height / (float)scaled.getHeight();
+            awtGraphics.drawImage(scaled, a * scaleX, b * scaleX, c * scaleY, d * scaleY, transforms[offset + 4],
+                    transforms[offset + 5]);
+        }
+        if (oldComposite != null) {
+            innerGraphics.setComposite(oldComposite);
+        }
     }
 
     @Override
     public int getHeight() {
-        return scaledImages[0].getHeight();
+        return height;
     }
 
     @Override
     public int getWidth() {
-        return scaledImages[0].getWidth();
+        return width;
     }
 }
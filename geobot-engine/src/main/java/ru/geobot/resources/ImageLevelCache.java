@@ -0,0 +1,143 @@
+package ru.geobot.resources;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+/**
+ * <p>Keeps scales of lazy images that were drawn recently, within a limit of memory. Entries are linked into
+ * a list from the most recently used to the least recently used one, and each image points to its own
+ * entries, so a hit neither allocates nor looks anything up in a map.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ImageLevelCache {
+    private final Entry head = new Entry();
+    private long limit;
+    private long usedBytes;
+    private int entryCount;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ImageLevelCache(long limit) {
+        this.limit = limit;
+        head.next = head;
+        head.previous = head;
+    }
+
+    public synchronized long getLimit() {
+        return limit;
+    }
+
+    public synchronized void setLimit(long limit) {
+        this.limit = limit;
+        evict(null);
+    }
+
+    /**
+     * <p>Gets the given scale of the image, loading it if it is not kept. Other scales made while loading are
+     * kept as the least recently used ones, so they are the first to go when there is no room for them.</p>
+     */
+    public BufferedImage get(LazyImageImpl image, int index) {
+        synchronized (this) {
+            Entry entry = image.entries[index];
+            if (entry != null) {
+                ++hits;
+                unlink(entry);
+                linkFirst(entry);
+                return entry.image;
+            }
+            ++misses;
+        }
+        BufferedImage[] scales = image.loadScales(index);
+        synchronized (this) {
+            for (int i = 0; i < scales.length; ++i) {
+                if (i != index && scales[i] != null && image.entries[i] == null) {
+                    linkLast(add(image, i, scales[i]));
+                }
+            }
+            Entry entry = image.entries[index];
+            if (entry != null) {
+                unlink(entry);
+            } else {
+                entry = add(image, index, scales[index]);
+            }
+            linkFirst(entry);
+            evict(entry);
+            return entry.image;
+        }
+    }
+
+    private Entry add(LazyImageImpl image, int index, BufferedImage scale) {
+        Entry entry = new Entry();
+        entry.owner = image;
+        entry.index = index;
+        entry.image = scale;
+        entry.size = sizeOf(scale);
+        image.entries[index] = entry;
+        usedBytes += entry.size;
+        ++entryCount;
+        return entry;
+    }
+
+    /**
+     * <p>Removes least recently used entries until the used memory fits the limit. The given entry is never
+     * removed, so that an image larger than the limit still can be drawn.</p>
+     */
+    private void evict(Entry keep) {
+        while (usedBytes > limit && head.previous != head) {
+            Entry entry = head.previous;
+            if (entry == keep) {
+                break;
+            }
+            unlink(entry);
+            entry.owner.entries[entry.index] = null;
+            usedBytes -= entry.size;
+            --entryCount;
+            ++evictions;
+        }
+    }
+
+    private void linkFirst(Entry entry) {
+        entry.previous = head;
+        entry.next = head.next;
+        head.next.previous = entry;
+        head.next = entry;
+    }
+
+    private void linkLast(Entry entry) {
+        entry.next = head;
+        entry.previous = head.previous;
+        head.previous.next = entry;
+        head.previous = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long)buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    public synchronized ImageMemoryStatistics getStatistics() {
+        return new ImageMemoryStatistics(hits, misses, evictions, entryCount, usedBytes, limit);
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    static class Entry {
+        LazyImageImpl owner;
+        int index;
+        BufferedImage image;
+        long size;
+        Entry previous;
+        Entry next;
+    }
+}
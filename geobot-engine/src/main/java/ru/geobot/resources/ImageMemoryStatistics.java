@@ -0,0 +1,64 @@
+package ru.geobot.resources;
+
+/**
+ * <p>A snapshot of the memory kept by scales of lazily loaded images. See
+ * {@link ResourceLoader#setLazyImages(boolean)}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ImageMemoryStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int scaleCount;
+    private final long usedBytes;
+    private final long limit;
+
+    ImageMemoryStatistics(long hits, long misses, long evictions, int scaleCount, long usedBytes, long limit) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.scaleCount = scaleCount;
+        this.usedBytes = usedBytes;
+        this.limit = limit;
+    }
+
+    /**
+     * <p>Gets the number of draws that found the needed scale in memory.</p>
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * <p>Gets the number of draws that had to load the needed scale.</p>
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * <p>Gets the number of scales kept in memory.</p>
+     */
+    public int getScaleCount() {
+        return scaleCount;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "Image scales: " + scaleCount + ", " + usedBytes / 1024 + " of " + limit / 1024 + " KB, hits: " +
+                hits + ", misses: " + misses + ", evictions: " + evictions;
+    }
+}
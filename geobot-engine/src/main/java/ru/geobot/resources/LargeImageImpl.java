@@ -4,7 +4,7 @@ import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import ru.geobot.AWTGraphics;
-import ru.geobot.graphics.AffineTransform;
+import ru.geobot.graphics.BatchingGraphics;
 import ru.geobot.graphics.Graphics;
 
 /**
@@ -24,8 +24,13 @@ class LargeImageImpl implements Image {
 
     @Override
     public void draw(Graphics graphics) {
-        AffineTransform transformation = graphics.getTransform();
-        double factor = Math.sqrt(Math.abs(transformation.getDeterminant()));
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, 1);
+            return;
+        }
+        AWTGraphics awtGraphics = (AWTGraphics)graphics;
+        graphics.pushTransform();
+        double factor = Math.sqrt(Math.abs(awtGraphics.getTransformDeterminant()));
         int index = 0;
         int intFactor = 1;
         while (index < scales.length - 1 && factor < 0.5) {
@@ -36,14 +41,19 @@ class LargeImageImpl implements Image {
         LargeImageScale scaled = scales[index];
         graphics.scale(intFactor, intFactor);
         graphics.scale(width / (float)(scaled.width * intFactor), height / (float)(scaled.height * intFactor));
-        scaled.draw(((AWTGraphics)graphics).getInnerGraphics());
-        graphics.setTransform(transformation);
+        scaled.draw(awtGraphics);
+        graphics.popTransform();
     }
 
     @Override
     public void draw(Graphics graphics, float alpha) {
-        AffineTransform transformation = graphics.getTransform();
-        double factor = Math.sqrt(Math.abs(transformation.getDeterminant()));
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, alpha);
+            return;
+        }
+        AWTGraphics awtGraphics = (AWTGraphics)graphics;
+        graphics.pushTransform();
+        double factor = Math.sqrt(Math.abs(awtGraphics.getTransformDeterminant()));
         int index = 0;
         int intFactor = 1;
         while (index < scales.length - 1 && factor < 0.5) {
@@ -54,12 +64,12 @@ class LargeImageImpl implements Image {
         LargeImageScale scaled = scales[index];
         graphics.scale(intFactor, intFactor);
         graphics.scale(width / (float)(scaled.width * intFactor), height / (float)(scaled.height * intFactor));
-        Graphics2D innerGraphics = ((AWTGraphics)graphics).getInnerGraphics();
+        Graphics2D innerGraphics = awtGraphics.getInnerGraphics();
         Composite oldComposite = innerGraphics.getComposite();
         innerGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-        scaled.draw(innerGraphics);
+        scaled.draw(awtGraphics);
         innerGraphics.setComposite(oldComposite);
-        graphics.setTransform(transformation);
+        graphics.popTransform();
     }
 
     @Override
@@ -1,8 +1,8 @@
 package ru.geobot.resources;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import ru.geobot.AWTGraphics;
 
 /**
  *
@@ -28,11 +28,11 @@ class LargeImageScale {
         this.rows = array.length / rowSize;
     }
 
-    public void draw(Graphics2D graphics) {
-        draw(graphics, 0, 0, rows, columns);
+    public void draw(AWTGraphics graphics) {
+        draw(graphics, graphics.getInnerClipBounds(), 0, 0, rows, columns);
     }
 
-    private void draw(Graphics2D graphics, int firstRow, int firstCol, int lastRow, int lastCol) {
+    private void draw(AWTGraphics graphics, Rectangle clipRect, int firstRow, int firstCol, int lastRow, int lastCol) {
         if (firstRow == lastRow || firstCol == lastCol) {
             return;
         }
@@ -40,18 +40,6 @@ class LargeImageScale {
         float top = firstRow * tileHeight;
         float right = lastCol * tileWidth;
         float bottom = lastRow * tileHeight;
-        float[] points = { left, top, right, top, right, bottom, left, bottom };
-        left = points[0];
-        right = points[0];
-        top = points[1];
-        bottom = points[1];
-        for (int i = 2; i < points.length; i += 2) {
-            left = Math.min(left, points[i]);
-            right = Math.max(right, points[i]);
-            top = Math.min(top, points[i + 1]);
-            bottom = Math.max(bottom, points[i + 1]);
-        }
-        java.awt.Rectangle clipRect = graphics.getClipBounds();
         int rowCount = lastRow - firstRow;
         int columnCount = lastCol - firstCol;
         if (left >= clipRect.x && right < clipRect.x + clipRect.width &&
@@ -64,20 +52,18 @@ class LargeImageScale {
             } else {
                 int midRow = (firstRow + lastRow) / 2;
                 int midCol = (firstCol + lastCol) / 2;
-                draw(graphics, firstRow, firstCol, midRow, midCol);
-                draw(graphics, firstRow, midCol, midRow, lastCol);
-                draw(graphics, midRow, firstCol, lastRow, midCol);
-                draw(graphics, midRow, midCol, lastRow, lastCol);
+                draw(graphics, clipRect, firstRow, firstCol, midRow, midCol);
+                draw(graphics, clipRect, firstRow, midCol, midRow, lastCol);
+                draw(graphics, clipRect, midRow, firstCol, lastRow, midCol);
+                draw(graphics, clipRect, midRow, midCol, lastRow, lastCol);
             }
         }
     }
 
-    private void render(Graphics2D graphics, int firstRow, int firstCol, int lastRow, int lastCol) {
+    private void render(AWTGraphics graphics, int firstRow, int firstCol, int lastRow, int lastCol) {
         for (int i = firstRow; i < lastRow; ++i) {
             for (int j = firstCol; j < lastCol; ++j) {
-                graphics.drawRenderedImage(array[columns * i + j],
-                        AffineTransform.getTranslateInstance(j * tileWidth,
-                        i * tileHeight));
+                graphics.drawImage(array[columns * i + j], 1, 0, 0, 1, j * tileWidth, i * tileHeight);
             }
         }
     }
@@ -0,0 +1,63 @@
+package ru.geobot.resources;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * <p>An image that decodes its pixels only when some scale of it is drawn. Scales are kept in an
+ * {@link ImageLevelCache} and are loaded again after they are evicted, either from the disk cache or
+ * by decoding and scaling the source image. Scales that are made along the way are kept as well.</p>
+ *
+ * @author Alexey Andreev
+ */
+class LazyImageImpl extends ImageImpl {
+    private final Class<?> resourceClass;
+    private final String path;
+    private final String name;
+    private final byte[] hash;
+    private final ImageLevelCache levelCache;
+    private final ImageCache imageCache;
+    final ImageLevelCache.Entry[] entries;
+
+    public LazyImageImpl(Class<?> resourceClass, String path, String name, byte[] hash, int width, int height,
+            ImageLevelCache levelCache, ImageCache imageCache) {
+        super(width, height, ResourceLoader.getScaleCount(width, height));
+        this.resourceClass = resourceClass;
+        this.path = path;
+        this.name = name;
+        this.hash = hash;
+        this.levelCache = levelCache;
+        this.imageCache = imageCache;
+        this.entries = new ImageLevelCache.Entry[ResourceLoader.getScaleCount(width, height)];
+    }
+
+    @Override
+    protected BufferedImage getScale(int index) {
+        return levelCache.get(this, index);
+    }
+
+    /**
+     * <p>Loads the given scale. Returns an array of all scales with the ones that were made along the way. The
+     * whole chain is made only when the disk cache is on, since it stores all scales at once; otherwise the
+     * chain stops at the given scale.</p>
+     */
+    BufferedImage[] loadScales(int index) {
+        BufferedImage[] result = new BufferedImage[entries.length];
+        if (imageCache != null) {
+            result[index] = imageCache.read(name, hash, index);
+            if (result[index] != null) {
+                return result;
+            }
+        }
+        byte[] source = ResourceLoader.readResource(resourceClass, path);
+        List<BufferedImage> scales = ResourceLoader.createScales(ResourceLoader.decodeImage(source),
+                imageCache != null ? Integer.MAX_VALUE : index + 1);
+        if (imageCache != null) {
+            imageCache.write(name, hash, new int[0], scales.toArray(new BufferedImage[scales.size()]));
+        }
+        for (int i = 0; i < scales.size() && i < result.length; ++i) {
+            result[i] = scales.get(i);
+        }
+        return result;
+    }
+}
@@ -7,5 +7,18 @@ import org.jbox2d.collision.shapes.PolygonShape;
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
 public interface PolygonalBodyFactory {
+    /**
+     * <p>Creates convex pieces of a body at the given scale. Implementations may return shared instances: the
+     * same array and shapes to every caller asking for the same scale, possibly from different threads, since
+     * factories are shared through the cache of {@link ResourceLoader}. Callers that keep the shapes, like
+     * selection shapes of game objects, keep shared instances, so neither the array nor the shapes must be
+     * modified.</p>
+     */
     PolygonShape[] create(float scale);
+
+    /**
+     * <p>Gets coordinates of convex pieces at the scale of 1, an array of x, y pairs per piece. The arrays must
+     * not be modified.</p>
+     */
+    float[][] getVertices();
 }
@@ -4,10 +4,11 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -15,11 +16,14 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import javax.imageio.ImageIO;
-import org.apache.commons.lang3.StringUtils;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.common.Vec2;
-import ru.geobot.util.GeometryUtils;
+import ru.geobot.util.DecompositionMode;
 import ru.geobot.util.Vertex;
 
 /**
@@ -27,62 +31,148 @@ import ru.geobot.util.Vertex;
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
 public class ResourceLoader {
+    private static final int TILE_SIZE = 256;
     private static ConcurrentMap<Class<?>, CachedEntry> cache = new ConcurrentHashMap<>();
+    private static volatile ImageCache imageCache = createDefaultImageCache();
+    private static volatile boolean lazyImages;
+    private static ImageLevelCache levelCache = new ImageLevelCache(64 * 1024 * 1024);
 
     private static class CachedEntry {
         public volatile CountDownLatch latch = new CountDownLatch(1);
         public volatile Object value;
+        public volatile RuntimeException error;
     }
 
+    private static ImageCache createDefaultImageCache() {
+        String path = System.getProperty("geobot.cache.dir");
+        if (path == null) {
+            path = System.getProperty("user.home") + File.separator + ".geobot" + File.separator + "cache";
+        } else if (path.isEmpty()) {
+            return null;
+        }
+        return new ImageCache(new File(path));
+    }
+
+    /**
+     * <p>Gets the directory where decoded and downscaled images are kept between launches. By default it is
+     * <code>.geobot/cache</code> in the user's home directory. The <code>geobot.cache.dir</code> system
+     * property overrides it, an empty value turns the cache off.</p>
+     */
+    public static File getCacheDirectory() {
+        ImageCache imageCache = ResourceLoader.imageCache;
+        return imageCache != null ? imageCache.getDirectory() : null;
+    }
+
+    /**
+     * <p>Sets the directory where decoded and downscaled images are kept between launches. <code>null</code>
+     * turns the cache off. Affects resource sets that are not loaded yet.</p>
+     */
+    public static void setCacheDirectory(File directory) {
+        imageCache = directory != null ? new ImageCache(directory) : null;
+    }
+
+    public static boolean isLazyImages() {
+        return lazyImages;
+    }
+
+    /**
+     * <p>Sets whether images that are not {@link Large} are decoded only when drawn. Only scales that are
+     * actually drawn are loaded, and they are kept within {@link #setImageMemoryLimit(long)}, the least recently
+     * drawn ones are evicted first. Affects resource sets that are not loaded yet.</p>
+     */
+    public static void setLazyImages(boolean lazyImages) {
+        ResourceLoader.lazyImages = lazyImages;
+    }
+
+    public static long getImageMemoryLimit() {
+        return levelCache.getLimit();
+    }
+
+    /**
+     * <p>Sets how many bytes of pixels lazy images may keep in memory. 64 MB by default.</p>
+     */
+    public static void setImageMemoryLimit(long limit) {
+        levelCache.setLimit(limit);
+    }
+
+    public static ImageMemoryStatistics getImageMemoryStatistics() {
+        return levelCache.getStatistics();
+    }
+
+    public static void resetImageMemoryStatistics() {
+        levelCache.resetStatistics();
+    }
+
+    /**
+     * <p>Loads the resource set of the given type or takes it from the cache. Can be called from several threads
+     * at once, each resource set is loaded only once. When called inside a
+     * {@link java.util.concurrent.ForkJoinPool}, resources of the set are loaded in parallel.</p>
+     */
     public static <T> T load(Class<T> type) {
         CachedEntry entry = cache.get(type);
         if (entry == null) {
-            entry = new CachedEntry();
-            if (cache.putIfAbsent(type, entry) == null) {
-                entry.value = create(type);
-                entry.latch.countDown();
-                entry.latch = null;
-            } else {
-                entry = cache.get(type);
-                CountDownLatch latch = entry.latch;
-                if (latch != null) {
-                    try {
-                        latch.await();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return null;
-                    }
+            CachedEntry newEntry = new CachedEntry();
+            entry = cache.putIfAbsent(type, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                try {
+                    entry.value = create(type);
+                } catch (RuntimeException e) {
+                    entry.error = e;
+                    cache.remove(type, entry);
+                    throw e;
+                } finally {
+                    entry.latch.countDown();
+                    entry.latch = null;
                 }
             }
         }
+        CountDownLatch latch = entry.latch;
+        if (latch != null) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        if (entry.error != null) {
+            throw new RuntimeException("Error loading resource set " + type.getName(), entry.error);
+        }
         return type.cast(entry.value);
     }
 
-    private static Object create(Class<?> type) {
-        final Map<Method, Object> resourceMap = new HashMap<>();
-        for (Method method : type.getMethods()) {
-            if (method.getParameterTypes().length > 0) {
-                throw new IllegalArgumentException("Method " + type.getName() + "." + method.getName() + " has " +
-                        "non-empty argument list");
-            }
-            ResourcePath path = method.getAnnotation(ResourcePath.class);
-            if (path == null) {
-                throw new IllegalArgumentException("Method " + type.getName() + "." + method.getName() +
-                        " does not have " + ResourcePath.class.getName() + " annotation");
-            }
-            if (method.getReturnType().equals(Image.class)) {
-                if (method.isAnnotationPresent(Large.class)) {
-                    resourceMap.put(method, createLargeImage(type, path.value()));
-                } else {
-                    resourceMap.put(method, createImage(type, path.value()));
-                }
-            } else if (method.getReturnType().equals(PolygonalBodyFactory.class)) {
-                resourceMap.put(method, createPolygonalBody(type, path.value()));
-            } else {
-                throw new IllegalArgumentException("Method " +  type.getName() + "." + method.getName() +
-                        " returns unexpected type " + method.getReturnType().getName());
+    private static Object create(final Class<?> type) {
+        final Method[] methods = type.getMethods();
+        final Object[] resources = new Object[methods.length];
+        if (ForkJoinTask.inForkJoinPool() && methods.length > 1) {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            for (int i = 0; i < methods.length; ++i) {
+                final int index = i;
+                tasks.add(new RecursiveAction() {
+                    @Override protected void compute() {
+                        resources[index] = createResource(type, methods[index]);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (int i = 0; i < methods.length; ++i) {
+                resources[i] = createResource(type, methods[i]);
             }
         }
+        Object resourceSet = ResourceSetGenerator.create(type, methods, resources);
+        return resourceSet != null ? resourceSet : createProxy(type, methods, resources);
+    }
+
+    /**
+     * <p>Implements a resource set with a {@link Proxy}. Used when a class cannot be generated.</p>
+     */
+    static Object createProxy(Class<?> type, Method[] methods, Object[] resources) {
+        final Map<Method, Object> resourceMap = new HashMap<>();
+        for (int i = 0; i < methods.length; ++i) {
+            resourceMap.put(methods[i], resources[i]);
+        }
         return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
                 new InvocationHandler() {
             @Override
@@ -92,62 +182,160 @@ public class ResourceLoader {
         });
     }
 
+    private static Object createResource(Class<?> type, Method method) {
+        if (method.getParameterTypes().length > 0) {
+            throw new IllegalArgumentException("Method " + type.getName() + "." + method.getName() + " has " +
+                    "non-empty argument list");
+        }
+        ResourcePath path = method.getAnnotation(ResourcePath.class);
+        if (path == null) {
+            throw new IllegalArgumentException("Method " + type.getName() + "." + method.getName() +
+                    " does not have " + ResourcePath.class.getName() + " annotation");
+        }
+        if (method.getReturnType().equals(Image.class)) {
+            if (method.isAnnotationPresent(Large.class)) {
+                return createLargeImage(type, path.value());
+            } else if (lazyImages) {
+                return createLazyImage(type, path.value());
+            } else {
+                return createImage(type, path.value());
+            }
+        } else if (method.getReturnType().equals(PolygonalBodyFactory.class)) {
+            return createPolygonalBody(type, path.value());
+        } else {
+            throw new IllegalArgumentException("Method " +  type.getName() + "." + method.getName() +
+                    " returns unexpected type " + method.getReturnType().getName());
+        }
+    }
+
+    /**
+     * <p>Creates a body factory from a binary shape compiled at build time, or from the text shape when there is
+     * no binary shape or it is out of date. Text shapes are split greedily, since the optimal split is too slow
+     * for startup.</p>
+     */
     private static DefaultPolygonalBodyFactory createPolygonalBody(Class<?> cls, String path) {
-        if (cls.getResource(path) == null) {
-            throw new RuntimeException("Resource not found: " + path);
+        byte[] source = readResource(cls, path);
+        byte[] hash = ShapeCompiler.hash(source);
+        String compiledPath = ShapeCompiler.getCompiledPath(path);
+        int[][] pieces = null;
+        if (cls.getResource(compiledPath) != null) {
+            pieces = ShapeCompiler.read(readResource(cls, compiledPath), hash, ShapeCompiler.BUILD_MODE);
         }
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(cls.getResourceAsStream(path)))) {
-            List<PolygonShape> shapes = new ArrayList<>();
-            while (true) {
-                String line = reader.readLine();
-                if (line == null) {
-                    break;
-                }
-                line = line.trim();
-                if (line.isEmpty()) {
-                    continue;
-                }
-                String[] parts = StringUtils.split(line, ' ');
-                List<Vertex> polygon = new ArrayList<>();
-                for (int i = 0; i < parts.length; i += 2) {
-                    Vertex v = new Vertex(Integer.parseInt(parts[i].trim()), Integer.parseInt(parts[i + 1].trim()));
-                    polygon.add(v);
-                }
-                if (polygon.size() >= 3) {
-                    List<List<Vertex>> polys = GeometryUtils.triangulate(polygon);
-                    for (List<Vertex> poly : polys) {
-                        PolygonShape shapePrototype = new PolygonShape();
-                        Vec2[] vertices = new Vec2[poly.size()];
-                        if (GeometryUtils.getOrientation(poly) < 0) {
-                            Collections.reverse(poly);
-                        }
-                        for (int i = 0; i < vertices.length; ++i) {
-                            Vec2 vec = new Vec2(poly.get(i).x, poly.get(i).y);
-                            vertices[i] = vec;
-                        }
-                        shapePrototype.set(vertices, vertices.length);
-                        shapes.add(shapePrototype);
-                    }
+        if (pieces == null) {
+            List<List<Vertex>> polygons = ShapeCompiler.compile(source, DecompositionMode.GREEDY);
+            pieces = new int[polygons.size()][];
+            for (int i = 0; i < pieces.length; ++i) {
+                List<Vertex> polygon = polygons.get(i);
+                pieces[i] = new int[polygon.size() * 2];
+                for (int j = 0; j < polygon.size(); ++j) {
+                    pieces[i][j * 2] = polygon.get(j).x;
+                    pieces[i][j * 2 + 1] = polygon.get(j).y;
                 }
             }
-            return new DefaultPolygonalBodyFactory(shapes.toArray(new PolygonShape[shapes.size()]));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        PolygonShape[] shapes = new PolygonShape[pieces.length];
+        for (int i = 0; i < shapes.length; ++i) {
+            int[] piece = pieces[i];
+            Vec2[] vertices = new Vec2[piece.length / 2];
+            for (int j = 0; j < vertices.length; ++j) {
+                vertices[j] = new Vec2(piece[j * 2], piece[j * 2 + 1]);
+            }
+            shapes[i] = new PolygonShape();
+            shapes[i].set(vertices, vertices.length);
+        }
+        return new DefaultPolygonalBodyFactory(shapes);
     }
 
-    private static ImageImpl createImage(Class<?> cls, String path) {
-        BufferedImage image;
-        try (InputStream input = cls.getResourceAsStream(path)) {
-            image = createRasterImage(input);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    static ImageImpl createImage(Class<?> cls, String path) {
+        byte[] source = readResource(cls, path);
+        byte[] hash = ImageCache.hash(source);
+        String name = getResourceName(cls, path);
+        ImageCache imageCache = ResourceLoader.imageCache;
+        if (imageCache != null) {
+            ImageCache.Entry entry = imageCache.read(name, hash);
+            if (entry != null) {
+                return new ImageImpl(entry.images);
+            }
+        }
+        List<BufferedImage> scales = createScales(decodeImage(source));
+        BufferedImage[] images = scales.toArray(new BufferedImage[scales.size()]);
+        if (imageCache != null) {
+            imageCache.write(name, hash, new int[0], images);
+        }
+        return new ImageImpl(images);
+    }
+
+    /**
+     * <p>Creates an image that knows only its size. Pixels are decoded when it is drawn.</p>
+     */
+    private static LazyImageImpl createLazyImage(Class<?> cls, String path) {
+        byte[] source = readResource(cls, path);
+        int[] size = readImageSize(source);
+        return new LazyImageImpl(cls, path, getResourceName(cls, path), ImageCache.hash(source), size[0], size[1],
+                levelCache, imageCache);
+    }
+
+    /**
+     * <p>Creates a large image. Only tiles are cached, along with width and height of each scale.</p>
+     */
+    private static LargeImageImpl createLargeImage(Class<?> cls, String path) {
+        byte[] source = readResource(cls, path);
+        byte[] hash = ImageCache.hash(source);
+        String name = getResourceName(cls, path);
+        ImageCache imageCache = ResourceLoader.imageCache;
+        if (imageCache != null) {
+            ImageCache.Entry entry = imageCache.read(name, hash);
+            if (entry != null) {
+                return restoreLargeImage(entry);
+            }
+        }
+        List<BufferedImage> scales = createScales(decodeImage(source));
+        LargeImageScale[] largeScales = new LargeImageScale[scales.size()];
+        int[] sizes = new int[scales.size() * 2];
+        List<BufferedImage> tiles = new ArrayList<>();
+        for (int i = 0; i < largeScales.length; ++i) {
+            largeScales[i] = splitImage(scales.get(i));
+            sizes[i * 2] = largeScales[i].width;
+            sizes[i * 2 + 1] = largeScales[i].height;
+            tiles.addAll(Arrays.asList(largeScales[i].array));
         }
+        if (imageCache != null) {
+            imageCache.write(name, hash, sizes, tiles.toArray(new BufferedImage[tiles.size()]));
+        }
+        return new LargeImageImpl(largeScales, largeScales[0].width, largeScales[0].height);
+    }
+
+    private static LargeImageImpl restoreLargeImage(ImageCache.Entry entry) {
+        LargeImageScale[] scales = new LargeImageScale[entry.metadata.length / 2];
+        int tileIndex = 0;
+        for (int i = 0; i < scales.length; ++i) {
+            int width = entry.metadata[i * 2];
+            int height = entry.metadata[i * 2 + 1];
+            int cols = ((width - 1) / TILE_SIZE) + 1;
+            int rows = ((height - 1) / TILE_SIZE) + 1;
+            BufferedImage[] tiles = Arrays.copyOfRange(entry.images, tileIndex, tileIndex + rows * cols);
+            tileIndex += tiles.length;
+            scales[i] = new LargeImageScale(width, height, TILE_SIZE, TILE_SIZE, tiles, cols);
+        }
+        return new LargeImageImpl(scales, scales[0].width, scales[0].height);
+    }
+
+    /**
+     * <p>Makes a list of the image and its copies, each one twice as small as the previous one.</p>
+     */
+    static List<BufferedImage> createScales(BufferedImage image) {
+        return createScales(image, Integer.MAX_VALUE);
+    }
+
+    /**
+     * <p>Makes no more than the given number of scales of the image, starting from the image itself.</p>
+     */
+    static List<BufferedImage> createScales(BufferedImage image, int count) {
         int factor = 2;
         List<BufferedImage> images = new ArrayList<>();
         images.add(image);
         BufferedImage scaledImage = image;
-        while (true) {
+        while (images.size() < count) {
             int w = image.getWidth() / factor;
             int h = image.getHeight() / factor;
             if (w == 0 || h == 0) {
@@ -163,46 +351,23 @@ public class ResourceLoader {
             scaledImage = nextImage;
             factor *= 2;
         }
-        return new ImageImpl(images.toArray(new BufferedImage[images.size()]));
+        return images;
     }
 
-    private static LargeImageImpl createLargeImage(Class<?> cls, String path) {
-        BufferedImage image;
-        try (InputStream input = cls.getResourceAsStream(path)) {
-            image = createRasterImage(input);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * <p>Gets the number of images {@link #createScales(BufferedImage)} makes for the given size.</p>
+     */
+    static int getScaleCount(int width, int height) {
+        int count = 1;
+        for (int factor = 2; width / factor > 0 && height / factor > 0; factor *= 2) {
+            ++count;
         }
-        int factor = 2;
-        List<LargeImageScale> images = new ArrayList<>();
-        images.add(splitImage(image));
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage scaledImage = image;
-        while (true) {
-            int w = image.getWidth() / factor;
-            int h = image.getHeight() / factor;
-            if (w == 0 || h == 0) {
-                break;
-            }
-            BufferedImage nextImage = new BufferedImage(w, h, scaledImage.getType());
-            Graphics2D graphics = nextImage.createGraphics();
-            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-            graphics.drawRenderedImage(scaledImage, AffineTransform.getScaleInstance(
-                    (float)w / scaledImage.getWidth(), (float)h / scaledImage.getHeight()));
-            graphics.dispose();
-            images.add(splitImage(nextImage));
-            scaledImage = nextImage;
-            factor *= 2;
-        }
-        return new LargeImageImpl(images.toArray(new LargeImageScale[images.size()]),
-                width, height);
+        return count;
     }
 
     private static LargeImageScale splitImage(BufferedImage image) {
-        int tileWidth = 256;
-        int tileHeight = 256;
+        int tileWidth = TILE_SIZE;
+        int tileHeight = TILE_SIZE;
         int rows = ((image.getHeight() - 1) / tileHeight) + 1;
         int cols = ((image.getWidth() - 1) / tileWidth) + 1;
         BufferedImage[] array = new BufferedImage[rows * cols];
@@ -222,7 +387,64 @@ public class ResourceLoader {
         return new LargeImageScale(image.getWidth(), image.getHeight(), tileWidth, tileHeight, array, cols);
     }
 
-    private static BufferedImage createRasterImage(InputStream input) throws IOException {
-        return ImageIO.read(input);
+    static byte[] readResource(Class<?> cls, String path) {
+        try (InputStream input = cls.getResourceAsStream(path)) {
+            if (input == null) {
+                throw new RuntimeException("Resource not found: " + path);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            while (true) {
+                int bytesRead = input.read(buffer);
+                if (bytesRead < 0) {
+                    break;
+                }
+                output.write(buffer, 0, bytesRead);
+            }
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>Gets the absolute name of a resource, the same way {@link Class#getResource(String)} resolves it.</p>
+     */
+    private static String getResourceName(Class<?> cls, String path) {
+        if (path.startsWith("/")) {
+            return path.substring(1);
+        }
+        String className = cls.getName();
+        int index = className.lastIndexOf('.');
+        return index >= 0 ? className.substring(0, index + 1).replace('.', '/') + path : path;
+    }
+
+    /**
+     * <p>Reads width and height of an image from its header, without decoding pixels.</p>
+     */
+    private static int[] readImageSize(byte[] source) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new RuntimeException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static BufferedImage decodeImage(byte[] source) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(source));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
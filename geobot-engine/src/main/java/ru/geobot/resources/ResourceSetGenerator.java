@@ -0,0 +1,97 @@
+package ru.geobot.resources;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * <p>Generates a class that implements a resource set interface with a final field per resource. Its
+ * constructor takes an array of resources in the order of methods and its methods just read fields, so
+ * calls to resource sets are as cheap as calls to ordinary getters.</p>
+ *
+ * @author Alexey Andreev
+ */
+class ResourceSetGenerator {
+    private static final String SUFFIX = "$GeneratedResources";
+
+    private ResourceSetGenerator() {
+    }
+
+    /**
+     * <p>Creates an instance of a resource set. Returns <code>null</code> if the interface cannot be
+     * implemented by a generated class, for example when it is not public.</p>
+     */
+    public static Object create(Class<?> type, Method[] methods, Object[] resources) {
+        if (!Modifier.isPublic(type.getModifiers()) || type.getClassLoader() == null) {
+            return null;
+        }
+        String className = type.getName() + SUFFIX;
+        byte[] bytecode = generate(className.replace('.', '/'), type, methods);
+        GeneratedClassLoader classLoader = new GeneratedClassLoader(type.getClassLoader());
+        try {
+            Class<?> cls = classLoader.define(className, bytecode);
+            Constructor<?> constructor = cls.getConstructor(Object[].class);
+            return constructor.newInstance((Object)resources);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                InvocationTargetException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static byte[] generate(String className, Class<?> type, Method[] methods) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                "java/lang/Object", new String[] { Type.getInternalName(type) });
+        for (int i = 0; i < methods.length; ++i) {
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "resource" + i,
+                    Type.getDescriptor(methods[i].getReturnType()), null, null).visitEnd();
+        }
+
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        for (int i = 0; i < methods.length; ++i) {
+            Class<?> resourceType = methods[i].getReturnType();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(resourceType));
+            mv.visitFieldInsn(Opcodes.PUTFIELD, className, "resource" + i, Type.getDescriptor(resourceType));
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < methods.length; ++i) {
+            Method method = methods[i];
+            mv = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(),
+                    Type.getMethodDescriptor(method), null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "resource" + i,
+                    Type.getDescriptor(method.getReturnType()));
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
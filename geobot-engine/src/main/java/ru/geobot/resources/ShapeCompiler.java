@@ -0,0 +1,199 @@
+package ru.geobot.resources;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import ru.geobot.util.DecompositionMode;
+import ru.geobot.util.GeometryUtils;
+import ru.geobot.util.Vertex;
+
+/**
+ * <p>Turns text shape files into convex polygons and stores them in a binary form. A text shape file holds
+ * a polygon per line as a list of coordinates. The binary form holds convex pieces of these polygons in
+ * counter-clockwise order, so that loading it takes neither parsing nor triangulation. Coordinates take two
+ * bytes each when they fit in a <code>short</code>, and four bytes otherwise.</p>
+ *
+ * <p>Binary shapes are written at build time by {@link ru.geobot.ResourceSetProcessor}. They hold a hash of
+ * the text they were made from, the version of the decomposition and its mode, and {@link ResourceLoader}
+ * falls back to the text when they are missing or do not match any of these.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class ShapeCompiler {
+    private static final int MAGIC = 0x47425348;
+    private static final int VERSION = 2;
+    /**
+     * <p>The version of the decomposition done by {@link GeometryUtils#triangulate(List, DecompositionMode)}.
+     * Must be increased whenever it starts splitting polygons differently, so that shapes compiled by an older
+     * build are split again.</p>
+     */
+    private static final int DECOMPOSITION_VERSION = 3;
+    /**
+     * <p>The mode that shapes are compiled with at build time. {@link ResourceLoader} splits out of date shapes
+     * in {@link DecompositionMode#GREEDY} instead, since this mode is too slow to be used at startup.</p>
+     */
+    public static final DecompositionMode BUILD_MODE = DecompositionMode.OPTIMAL;
+    private static final String SOURCE_SUFFIX = ".txt";
+    private static final String COMPILED_SUFFIX = ".shape";
+
+    private ShapeCompiler() {
+    }
+
+    /**
+     * <p>Gets the path of the binary shape compiled from the given text shape.</p>
+     */
+    public static String getCompiledPath(String path) {
+        if (path.endsWith(SOURCE_SUFFIX)) {
+            path = path.substring(0, path.length() - SOURCE_SUFFIX.length());
+        }
+        return path + COMPILED_SUFFIX;
+    }
+
+    public static byte[] hash(byte[] source) {
+        return ImageCache.hash(source);
+    }
+
+    /**
+     * <p>Parses a text shape file and splits its polygons into convex pieces in {@link #BUILD_MODE}.</p>
+     */
+    public static List<List<Vertex>> compile(byte[] source) {
+        return compile(source, BUILD_MODE);
+    }
+
+    /**
+     * <p>Parses a text shape file and splits its polygons into convex pieces.</p>
+     */
+    public static List<List<Vertex>> compile(byte[] source, DecompositionMode mode) {
+        List<List<Vertex>> pieces = new ArrayList<>();
+        for (List<Vertex> polygon : parse(source)) {
+            if (polygon.size() >= 3) {
+                for (List<Vertex> piece : GeometryUtils.triangulate(polygon, mode)) {
+                    if (GeometryUtils.getOrientation(piece) < 0) {
+                        Collections.reverse(piece);
+                    }
+                    pieces.add(piece);
+                }
+            }
+        }
+        return pieces;
+    }
+
+    private static List<List<Vertex>> parse(byte[] source) {
+        List<List<Vertex>> polygons = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source),
+                StandardCharsets.UTF_8))) {
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = StringUtils.split(line, ' ');
+                List<Vertex> polygon = new ArrayList<>();
+                for (int i = 0; i < parts.length; i += 2) {
+                    Vertex v = new Vertex(Integer.parseInt(parts[i].trim()), Integer.parseInt(parts[i + 1].trim()));
+                    polygon.add(v);
+                }
+                polygons.add(polygon);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return polygons;
+    }
+
+    /**
+     * <p>Writes convex pieces along with the hash of the text they were made from and the mode they were
+     * split in.</p>
+     */
+    public static void write(OutputStream output, byte[] sourceHash, DecompositionMode mode,
+            List<List<Vertex>> pieces) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(DECOMPOSITION_VERSION);
+        data.writeByte(mode.ordinal());
+        data.writeInt(sourceHash.length);
+        data.write(sourceHash);
+        boolean shortCoordinates = true;
+        for (List<Vertex> piece : pieces) {
+            if (piece.size() > 255) {
+                throw new IOException("Too many vertices in a convex piece: " + piece.size());
+            }
+            for (Vertex vertex : piece) {
+                if (vertex.x != (short)vertex.x || vertex.y != (short)vertex.y) {
+                    shortCoordinates = false;
+                }
+            }
+        }
+        data.writeByte(shortCoordinates ? 2 : 4);
+        data.writeInt(pieces.size());
+        for (List<Vertex> piece : pieces) {
+            data.writeByte(piece.size());
+            for (Vertex vertex : piece) {
+                if (shortCoordinates) {
+                    data.writeShort(vertex.x);
+                    data.writeShort(vertex.y);
+                } else {
+                    data.writeInt(vertex.x);
+                    data.writeInt(vertex.y);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * <p>Reads convex pieces as arrays of coordinates. Returns <code>null</code> if the data is not a binary
+     * shape, was made from another text or was split by another version of the decomposition or in another
+     * mode.</p>
+     */
+    public static int[][] read(byte[] compiled, byte[] sourceHash, DecompositionMode mode) {
+        ByteBuffer buffer = ByteBuffer.wrap(compiled);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != DECOMPOSITION_VERSION
+                    || buffer.get() != mode.ordinal()) {
+                return null;
+            }
+            byte[] storedHash = new byte[buffer.getInt()];
+            buffer.get(storedHash);
+            if (!Arrays.equals(storedHash, sourceHash)) {
+                return null;
+            }
+            int coordinateSize = buffer.get();
+            if (coordinateSize != 2 && coordinateSize != 4) {
+                return null;
+            }
+            int[][] pieces = new int[buffer.getInt()][];
+            for (int i = 0; i < pieces.length; ++i) {
+                int[] piece = new int[(buffer.get() & 0xFF) * 2];
+                if (coordinateSize == 2) {
+                    for (int j = 0; j < piece.length; ++j) {
+                        piece[j] = buffer.getShort();
+                    }
+                } else {
+                    buffer.asIntBuffer().get(piece);
+                    buffer.position(buffer.position() + piece.length * 4);
+                }
+                pieces[i] = piece;
+            }
+            return pieces;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.geobot.util;
+
+import org.jbox2d.common.Settings;
+
+/**
+ * <p>Tells {@link GeometryUtils#triangulate(java.util.List, DecompositionMode)} how hard it should try to
+ * reduce the number of convex pieces. Every piece becomes a separate fixture, so fewer pieces make
+ * physics steps cheaper.</p>
+ *
+ * @author Alexey Andreev
+ */
+public enum DecompositionMode {
+    /**
+     * <p>Glues triangles together while the result stays convex. Takes O(n<sup>2</sup>) time in the worst case.</p>
+     */
+    GREEDY,
+
+    /**
+     * <p>Finds the least number of pieces cut by diagonals with no more than
+     * {@link Settings#maxPolygonVertices} vertices each for polygons that have no more than a hundred
+     * vertices, and acts like {@link #GREEDY} for larger polygons. Meant for shapes that are split at build
+     * time.</p>
+     */
+    OPTIMAL
+}
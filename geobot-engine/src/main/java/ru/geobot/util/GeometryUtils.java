@@ -8,7 +8,37 @@ import org.jbox2d.common.Settings;
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
 public class GeometryUtils {
+    /**
+     * <p>Splits a simple polygon into convex pieces that have no more than
+     * {@link Settings#maxPolygonVertices} vertices each. Uses {@link MonotoneTriangulator}, which takes
+     * O(n<sup>2</sup>) time in the worst case and much less for typical shapes, and falls back to
+     * {@link #triangulateByEarClipping(List)} for degenerate polygons.</p>
+     */
     public static List<List<Vertex>> triangulate(List<Vertex> vertices) {
+        return triangulate(vertices, DecompositionMode.GREEDY);
+    }
+
+    /**
+     * <p>Splits a simple polygon into convex pieces like {@link #triangulate(List)}, trying as hard as the
+     * given mode says to get fewer pieces.</p>
+     */
+    public static List<List<Vertex>> triangulate(List<Vertex> vertices, DecompositionMode mode) {
+        int orientation = getOrientation(vertices);
+        if (orientation < 0) {
+            vertices = new ArrayList<>(vertices);
+            Collections.reverse(vertices);
+        }
+        List<List<Vertex>> result = MonotoneTriangulator.triangulate(vertices);
+        if (mode == DecompositionMode.OPTIMAL && (result == null || result.size() > 1)) {
+            List<List<Vertex>> optimal = OptimalPartitioner.triangulate(vertices);
+            if (optimal != null && (result == null || optimal.size() < result.size())) {
+                result = optimal;
+            }
+        }
+        return result != null ? result : triangulateByEarClipping(vertices);
+    }
+
+    public static List<List<Vertex>> triangulateByEarClipping(List<Vertex> vertices) {
         int orientation = getOrientation(vertices);
         if (orientation < 0) {
             vertices = new ArrayList<>(vertices);
@@ -0,0 +1,1005 @@
+package ru.geobot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jbox2d.common.Settings;
+
+/**
+ * <p>Splits a simple polygon into convex pieces. A sweep line cuts the polygon into monotone parts, each
+ * monotone part is triangulated in linear time, diagonals are flipped towards a Delaunay triangulation, and
+ * then triangles are glued back together across their common edges while the result stays convex and has no
+ * more than {@link Settings#maxPolygonVertices} vertices.</p>
+ *
+ * <p>Vertices are sorted and edges are looked up in O(n log n) time, but the sweep line status is a sorted
+ * array, so inserting and removing an edge moves O(n) elements, and flipping may take O(n<sup>2</sup>) flips.
+ * So the worst case is O(n<sup>2</sup>). Polygons of the game cross the sweep line a few times at most and
+ * need few flips, so for them both terms stay small.</p>
+ *
+ * <p>Vertices are ordered by descending y, and by ascending x when y is the same, which is the same as
+ * sweeping a slightly rotated polygon, so horizontal edges need no special care. All tests are exact integer
+ * orientation tests.</p>
+ *
+ * @author Alexey Andreev
+ */
+class MonotoneTriangulator {
+    private static final int MAX_FLIP_EXTENT = 1 << 14;
+    private final List<Vertex> vertices;
+    private final int n;
+    private final int[] xs;
+    private final int[] ys;
+    private int[] diagonals;
+    private int diagonalCount;
+    private final int[] triangles;
+    private int triangleCount;
+
+    private MonotoneTriangulator(List<Vertex> vertices) {
+        this.vertices = vertices;
+        n = vertices.size();
+        xs = new int[n];
+        ys = new int[n];
+        for (int i = 0; i < n; ++i) {
+            Vertex vertex = vertices.get(i);
+            xs[i] = vertex.x;
+            ys[i] = vertex.y;
+        }
+        diagonals = new int[16];
+        triangles = new int[3 * n];
+    }
+
+    /**
+     * <p>Splits a counter-clockwise polygon into convex pieces. Returns <code>null</code> if the polygon is
+     * degenerate, for example when it has repeated vertices or edges that touch each other.</p>
+     */
+    public static List<List<Vertex>> triangulate(List<Vertex> vertices) {
+        if (vertices.size() < 3) {
+            return null;
+        }
+        MonotoneTriangulator triangulator = new MonotoneTriangulator(vertices);
+        try {
+            return triangulator.run();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private List<List<Vertex>> run() {
+        for (int i = 0; i < n; ++i) {
+            if (xs[i] == xs[next(i)] && ys[i] == ys[next(i)]) {
+                return null;
+            }
+        }
+        if (!splitIntoMonotone() || !triangulateFaces()) {
+            return null;
+        }
+        int[] adjacent = findAdjacentTriangles();
+        flipToDelaunay(adjacent);
+        List<int[]> pieces = regroup(mergeTriangles(adjacent));
+
+        long area = 0;
+        List<List<Vertex>> result = new ArrayList<>(pieces.size());
+        for (int[] piece : pieces) {
+            long pieceArea = area(piece);
+            if (pieceArea <= 0) {
+                return null;
+            }
+            area += pieceArea;
+            List<Vertex> polygon = new ArrayList<>(piece.length);
+            for (int index : piece) {
+                polygon.add(vertices.get(index));
+            }
+            result.add(polygon);
+        }
+        int[] all = new int[n];
+        for (int i = 0; i < n; ++i) {
+            all[i] = i;
+        }
+        return area == area(all) ? result : null;
+    }
+
+    private boolean splitIntoMonotone() {
+        int[] order = new int[n];
+        for (int i = 0; i < n; ++i) {
+            order[i] = i;
+        }
+        sortFromTop(order, new int[n], 0, n);
+
+        int[] status = new int[n];
+        int statusSize = 0;
+        int[] helper = new int[n];
+        boolean[] merge = new boolean[n];
+        for (int i : order) {
+            int previous = previous(i);
+            int next = next(i);
+            long turn = cross(previous, i, next);
+            if (below(previous, i) && below(next, i)) {
+                if (turn == 0) {
+                    return false;
+                }
+                int position = countLeftEdges(status, statusSize, i);
+                if (turn < 0) {
+                    // split vertex
+                    if (position == 0) {
+                        return false;
+                    }
+                    int left = status[position - 1];
+                    addDiagonal(i, helper[left]);
+                    helper[left] = i;
+                }
+                System.arraycopy(status, position, status, position + 1, statusSize - position);
+                status[position] = i;
+                ++statusSize;
+                helper[i] = i;
+            } else if (below(i, previous) && below(i, next)) {
+                if (turn == 0) {
+                    return false;
+                }
+                int position = findEdge(status, statusSize, previous, i);
+                if (position < 0) {
+                    return false;
+                }
+                System.arraycopy(status, position + 1, status, position, statusSize - position - 1);
+                --statusSize;
+                if (merge[helper[previous]]) {
+                    addDiagonal(i, helper[previous]);
+                }
+                if (turn < 0) {
+                    merge[i] = true;
+                    if (!updateLeftEdge(status, statusSize, helper, merge, i)) {
+                        return false;
+                    }
+                }
+            } else if (below(i, previous)) {
+                int position = findEdge(status, statusSize, previous, i);
+                if (position < 0) {
+                    return false;
+                }
+                if (merge[helper[previous]]) {
+                    addDiagonal(i, helper[previous]);
+                }
+                status[position] = i;
+                helper[i] = i;
+            } else {
+                if (!updateLeftEdge(status, statusSize, helper, merge, i)) {
+                    return false;
+                }
+            }
+        }
+        return statusSize == 0;
+    }
+
+    private void sortFromTop(int[] indexes, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortFromTop(indexes, buffer, from, middle);
+        sortFromTop(indexes, buffer, middle, to);
+        int i = from;
+        int j = middle;
+        int k = from;
+        while (i < middle && j < to) {
+            buffer[k++] = below(indexes[j], indexes[i]) ? indexes[i++] : indexes[j++];
+        }
+        while (i < middle) {
+            buffer[k++] = indexes[i++];
+        }
+        while (j < to) {
+            buffer[k++] = indexes[j++];
+        }
+        System.arraycopy(buffer, from, indexes, from, to - from);
+    }
+
+    private boolean updateLeftEdge(int[] status, int statusSize, int[] helper, boolean[] merge, int vertex) {
+        int position = countLeftEdges(status, statusSize, vertex);
+        if (position == 0) {
+            return false;
+        }
+        int left = status[position - 1];
+        if (merge[helper[left]]) {
+            addDiagonal(vertex, helper[left]);
+        }
+        helper[left] = vertex;
+        return true;
+    }
+
+    /**
+     * <p>Counts edges of the sweep line status that lie to the left of the given vertex. Status holds edges
+     * from left to right, each edge is denoted by its upper vertex and goes down to the next vertex.</p>
+     */
+    private int countLeftEdges(int[] status, int statusSize, int vertex) {
+        int low = 0;
+        int high = statusSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int edge = status[mid];
+            if (cross(edge, next(edge), vertex) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * <p>Finds the position of an edge in the status by its lower end. Returns -1 if the edge is not where
+     * the order of the status puts it, which only happens when edges of the polygon touch.</p>
+     */
+    private int findEdge(int[] status, int statusSize, int edge, int lowerVertex) {
+        int position = countLeftEdges(status, statusSize, lowerVertex);
+        return position < statusSize && status[position] == edge ? position : -1;
+    }
+
+    private void addDiagonal(int a, int b) {
+        if (a != b && next(a) != b && previous(a) != b) {
+            if (2 * diagonalCount == diagonals.length) {
+                diagonals = Arrays.copyOf(diagonals, diagonals.length * 2);
+            }
+            diagonals[2 * diagonalCount] = a;
+            diagonals[2 * diagonalCount + 1] = b;
+            ++diagonalCount;
+        }
+    }
+
+    /**
+     * <p>Walks the faces that polygon edges and diagonals split the polygon into, and triangulates each of
+     * them. Neighbours of every vertex are sorted by angle, so a face goes on from an edge to the neighbour
+     * that comes just before this edge counter-clockwise.</p>
+     */
+    private boolean triangulateFaces() {
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; ++i) {
+            offsets[i + 1] = 2;
+        }
+        for (int i = 0; i < 2 * diagonalCount; ++i) {
+            offsets[diagonals[i] + 1]++;
+        }
+        for (int i = 0; i < n; ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] neighbours = new int[offsets[n]];
+        int[] degrees = new int[n];
+        for (int i = 0; i < n; ++i) {
+            neighbours[offsets[i]] = previous(i);
+            neighbours[offsets[i] + 1] = next(i);
+            degrees[i] = 2;
+        }
+        for (int i = 0; i < diagonalCount; ++i) {
+            int a = diagonals[2 * i];
+            int b = diagonals[2 * i + 1];
+            neighbours[offsets[a] + degrees[a]++] = b;
+            neighbours[offsets[b] + degrees[b]++] = a;
+        }
+        boolean[] visited = new boolean[neighbours.length];
+        for (int i = 0; i < n; ++i) {
+            if (degrees[i] > 2) {
+                sortByAngle(i, neighbours, offsets[i], offsets[i + 1]);
+            }
+            visited[indexOf(neighbours, offsets[i], offsets[i + 1], previous(i))] = true;
+        }
+
+        int[] face = new int[n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = offsets[i]; j < offsets[i + 1]; ++j) {
+                if (visited[j]) {
+                    continue;
+                }
+                int size = 0;
+                int a = i;
+                int k = j;
+                while (!visited[k]) {
+                    visited[k] = true;
+                    if (size == n) {
+                        return false;
+                    }
+                    face[size++] = a;
+                    int b = neighbours[k];
+                    int back = indexOf(neighbours, offsets[b], offsets[b + 1], a);
+                    k = back > offsets[b] ? back - 1 : offsets[b + 1] - 1;
+                    a = b;
+                }
+                if (!triangulateMonotone(Arrays.copyOf(face, size))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void sortByAngle(int center, int[] indexes, int from, int to) {
+        for (int i = from + 1; i < to; ++i) {
+            int vertex = indexes[i];
+            int j = i;
+            while (j > from && compareAngles(center, vertex, indexes[j - 1]) < 0) {
+                indexes[j] = indexes[j - 1];
+                --j;
+            }
+            indexes[j] = vertex;
+        }
+    }
+
+    private int compareAngles(int center, int a, int b) {
+        int firstHalf = halfPlane(center, a);
+        int secondHalf = halfPlane(center, b);
+        if (firstHalf != secondHalf) {
+            return Integer.compare(firstHalf, secondHalf);
+        }
+        return -Long.signum(cross(center, a, b));
+    }
+
+    private int halfPlane(int center, int vertex) {
+        int dx = xs[vertex] - xs[center];
+        int dy = ys[vertex] - ys[center];
+        return dy > 0 || dy == 0 && dx > 0 ? 0 : 1;
+    }
+
+    /**
+     * <p>Triangulates a monotone face with a stack of vertices that are still waiting for diagonals.</p>
+     */
+    private boolean triangulateMonotone(int[] face) {
+        int size = face.length;
+        if (size == 3) {
+            addTriangle(face[0], face[1], face[2]);
+            return true;
+        }
+        int top = 0;
+        int bottom = 0;
+        for (int i = 1; i < size; ++i) {
+            if (below(face[top], face[i])) {
+                top = i;
+            }
+            if (below(face[i], face[bottom])) {
+                bottom = i;
+            }
+        }
+
+        int[] sorted = new int[size];
+        boolean[] leftChain = new boolean[size];
+        sorted[0] = face[top];
+        int left = (top + 1) % size;
+        int right = (top + size - 1) % size;
+        for (int i = 1; i < size; ++i) {
+            boolean takeLeft = left != bottom && (right == bottom || below(face[right], face[left]));
+            int index = takeLeft ? left : right;
+            if (!below(face[index], sorted[i - 1])) {
+                return false;
+            }
+            sorted[i] = face[index];
+            leftChain[i] = takeLeft && index != bottom;
+            if (takeLeft) {
+                left = (left + 1) % size;
+            } else {
+                right = (right + size - 1) % size;
+            }
+        }
+
+        int[] stack = new int[size];
+        int[] stackOrder = new int[size];
+        stack[0] = sorted[0];
+        stack[1] = sorted[1];
+        stackOrder[1] = 1;
+        int stackSize = 2;
+        for (int j = 2; j < size - 1; ++j) {
+            int current = sorted[j];
+            if (leftChain[j] != leftChain[stackOrder[stackSize - 1]]) {
+                for (int k = 0; k < stackSize - 1; ++k) {
+                    addTriangle(current, stack[k], stack[k + 1]);
+                }
+                stack[0] = sorted[j - 1];
+                stackOrder[0] = j - 1;
+                stackSize = 1;
+            } else {
+                int last = stack[--stackSize];
+                int lastOrder = stackOrder[stackSize];
+                while (stackSize > 0) {
+                    long turn = cross(stack[stackSize - 1], current, last);
+                    if (leftChain[j] ? turn >= 0 : turn <= 0) {
+                        break;
+                    }
+                    addTriangle(current, last, stack[stackSize - 1]);
+                    --stackSize;
+                    last = stack[stackSize];
+                    lastOrder = stackOrder[stackSize];
+                }
+                stack[stackSize] = last;
+                stackOrder[stackSize++] = lastOrder;
+            }
+            stack[stackSize] = current;
+            stackOrder[stackSize++] = j;
+        }
+        for (int k = 0; k < stackSize - 1; ++k) {
+            addTriangle(sorted[size - 1], stack[k], stack[k + 1]);
+        }
+        return true;
+    }
+
+    private void addTriangle(int a, int b, int c) {
+        long turn = cross(a, b, c);
+        if (turn == 0) {
+            return;
+        }
+        if (turn > 0) {
+            setTriangle(triangleCount++, a, b, c);
+        } else {
+            setTriangle(triangleCount++, a, c, b);
+        }
+    }
+
+    private void setTriangle(int triangle, int a, int b, int c) {
+        triangles[3 * triangle] = a;
+        triangles[3 * triangle + 1] = b;
+        triangles[3 * triangle + 2] = c;
+    }
+
+    /**
+     * <p>Finds the neighbour of every triangle across each of its edges. Edges are sorted by their ends, so
+     * both triangles that share an edge come next to each other.</p>
+     */
+    private int[] findAdjacentTriangles() {
+        int[] adjacent = new int[3 * triangleCount];
+        long[] keys = new long[3 * triangleCount];
+        for (int i = 0; i < keys.length; ++i) {
+            int a = triangles[i];
+            int b = triangles[i % 3 == 2 ? i - 2 : i + 1];
+            keys[i] = ((long)Math.min(a, b) * n + Math.max(a, b)) * keys.length + i;
+            adjacent[i] = -1;
+        }
+        Arrays.sort(keys);
+        for (int i = 1; i < keys.length; ++i) {
+            if (keys[i] / keys.length == keys[i - 1] / keys.length) {
+                int first = (int)(keys[i - 1] % keys.length);
+                int second = (int)(keys[i] % keys.length);
+                adjacent[first] = second / 3;
+                adjacent[second] = first / 3;
+            }
+        }
+        return adjacent;
+    }
+
+    /**
+     * <p>Flips diagonals until no triangle has a vertex of its neighbour inside its circumcircle. Sweep
+     * produces long thin triangles, while fat triangles of a Delaunay triangulation glue into fewer convex
+     * pieces. The circle test is exact only while coordinates differ by less than {@link #MAX_FLIP_EXTENT},
+     * so larger polygons are not flipped. Every flip makes the triangulation closer to Delaunay, so flipping
+     * stops, but it may take O(n<sup>2</sup>) flips.</p>
+     */
+    private void flipToDelaunay(int[] adjacent) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; ++i) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if ((long)maxX - minX >= MAX_FLIP_EXTENT || (long)maxY - minY >= MAX_FLIP_EXTENT) {
+            return;
+        }
+
+        int[] pending = new int[triangleCount];
+        boolean[] queued = new boolean[triangleCount];
+        int pendingCount = 0;
+        for (int i = triangleCount - 1; i >= 0; --i) {
+            pending[pendingCount++] = i;
+            queued[i] = true;
+        }
+        while (pendingCount > 0) {
+            int first = pending[--pendingCount];
+            queued[first] = false;
+            for (int j = 0; j < 3; ++j) {
+                int second = adjacent[3 * first + j];
+                if (second >= 0 && flip(adjacent, first, j, second)) {
+                    if (!queued[first]) {
+                        queued[first] = true;
+                        pending[pendingCount++] = first;
+                    }
+                    if (!queued[second]) {
+                        queued[second] = true;
+                        pending[pendingCount++] = second;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Replaces the common edge <code>ab</code> of triangles <code>abc</code> and <code>bad</code> with the
+     * edge <code>cd</code> if <code>d</code> lies inside the circumcircle of <code>abc</code>.</p>
+     */
+    private boolean flip(int[] adjacent, int first, int edge, int second) {
+        int p = 3 * first;
+        int q = 3 * second;
+        int j1 = edge < 2 ? edge + 1 : 0;
+        int j2 = j1 < 2 ? j1 + 1 : 0;
+        int a = triangles[p + edge];
+        int b = triangles[p + j1];
+        int c = triangles[p + j2];
+        int k = 0;
+        while (k < 3 && triangles[q + k] != b) {
+            ++k;
+        }
+        int k1 = k < 2 ? k + 1 : 0;
+        int k2 = k1 < 2 ? k1 + 1 : 0;
+        if (k == 3 || triangles[q + k1] != a) {
+            return false;
+        }
+        int d = triangles[q + k2];
+        if (cross(c, a, d) <= 0 || cross(d, b, c) <= 0 || !inCircle(a, b, c, d)) {
+            return false;
+        }
+        int nextToBC = adjacent[p + j1];
+        int nextToCA = adjacent[p + j2];
+        int nextToAD = adjacent[q + k1];
+        int nextToDB = adjacent[q + k2];
+        setTriangle(first, a, d, c);
+        setTriangle(second, d, b, c);
+        adjacent[p] = nextToAD;
+        adjacent[p + 1] = second;
+        adjacent[p + 2] = nextToCA;
+        adjacent[q] = nextToDB;
+        adjacent[q + 1] = nextToBC;
+        adjacent[q + 2] = first;
+        replaceAdjacent(adjacent, nextToAD, second, first);
+        replaceAdjacent(adjacent, nextToBC, first, second);
+        return true;
+    }
+
+    private static void replaceAdjacent(int[] adjacent, int triangle, int oldValue, int newValue) {
+        if (triangle < 0) {
+            return;
+        }
+        for (int i = 3 * triangle; i < 3 * triangle + 3; ++i) {
+            if (adjacent[i] == oldValue) {
+                adjacent[i] = newValue;
+                return;
+            }
+        }
+    }
+
+    /**
+     * <p>Tells whether <code>d</code> lies strictly inside the circumcircle of the counter-clockwise
+     * triangle <code>abc</code>.</p>
+     */
+    private boolean inCircle(int a, int b, int c, int d) {
+        long adx = xs[a] - xs[d];
+        long ady = ys[a] - ys[d];
+        long bdx = xs[b] - xs[d];
+        long bdy = ys[b] - ys[d];
+        long cdx = xs[c] - xs[d];
+        long cdy = ys[c] - ys[d];
+        long det = (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy) -
+                (bdx * bdx + bdy * bdy) * (adx * cdy - cdx * ady) +
+                (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+        return det > 0;
+    }
+
+    /**
+     * <p>Glues triangles together across their common edges, in the order the sweep produced them, as long as
+     * the glued piece stays convex and small enough for Box2D.</p>
+     */
+    private List<int[]> mergeTriangles(int[] adjacent) {
+        int[][] pieces = new int[triangleCount][];
+        int[] parents = new int[triangleCount];
+        for (int i = 0; i < triangleCount; ++i) {
+            pieces[i] = Arrays.copyOfRange(triangles, 3 * i, 3 * i + 3);
+            parents[i] = i;
+        }
+        for (int i = 0; i < triangleCount; ++i) {
+            for (int j = 0; j < 3; ++j) {
+                int other = adjacent[3 * i + j];
+                if (other < 0 || other > i) {
+                    continue;
+                }
+                int a = triangles[3 * i + j];
+                int b = triangles[3 * i + (j < 2 ? j + 1 : 0)];
+                int first = find(parents, other);
+                int second = find(parents, i);
+                if (first == second) {
+                    continue;
+                }
+                if (pieces[first].length + pieces[second].length - 2 <= Settings.maxPolygonVertices &&
+                        gluesConvex(pieces[first], pieces[second], a, b)) {
+                    pieces[first] = glue(pieces[first], pieces[second], a, b);
+                    pieces[second] = null;
+                    parents[second] = first;
+                }
+            }
+        }
+
+        List<int[]> result = new ArrayList<>();
+        for (int[] piece : pieces) {
+            if (piece != null) {
+                result.add(piece);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>Improves pieces that could not be glued any further. Every three neighbouring pieces are joined and
+     * cut by a single diagonal into two convex pieces when possible, which takes one piece away each time.</p>
+     */
+    private List<int[]> regroup(List<int[]> pieceList) {
+        int[][] pieces = pieceList.toArray(new int[pieceList.size()][]);
+        EdgeMap edges = new EdgeMap(n, 3 * n);
+        IntStack pending = new IntStack();
+        for (int i = 0; i < pieces.length; ++i) {
+            addPiece(edges, pending, pieces[i], i);
+        }
+        boolean[] used = new boolean[n];
+        boolean[] reflex = new boolean[n];
+        while (!pending.isEmpty()) {
+            int edge = pending.pop();
+            if (!edges.isShared(edge)) {
+                continue;
+            }
+            int first = edges.owners[2 * edge];
+            int second = edges.owners[2 * edge + 1];
+            int[] joined = glue(pieces[first], pieces[second], edges.lows[edge], edges.highs[edge]);
+            if (joined == null) {
+                continue;
+            }
+            int reflexCount = 0;
+            for (int i = 0; i < joined.length; ++i) {
+                reflex[i] = !isConvexAt(joined, i);
+                if (reflex[i]) {
+                    ++reflexCount;
+                }
+            }
+            for (int i = 0; i < joined.length; ++i) {
+                int j = (i + 1) % joined.length;
+                if (reflexCount - (reflex[i] ? 1 : 0) - (reflex[j] ? 1 : 0) > 2) {
+                    continue;
+                }
+                int u = joined[i];
+                int v = joined[j];
+                int third = edges.find(u, v);
+                if (third < 0 || !edges.isShared(third)) {
+                    continue;
+                }
+                int other = edges.owners[2 * third];
+                if (other == first || other == second) {
+                    other = edges.owners[2 * third + 1];
+                }
+                if (other == first || other == second ||
+                        joined.length + pieces[other].length - 2 > 2 * Settings.maxPolygonVertices - 2) {
+                    continue;
+                }
+                int[] polygon = glue(joined, pieces[other], u, v);
+                if (polygon == null || hasRepeatedVertices(polygon, used)) {
+                    continue;
+                }
+                int[][] split = splitInTwo(polygon);
+                if (split == null) {
+                    continue;
+                }
+                edges.removePolygon(pieces[first], first);
+                edges.removePolygon(pieces[second], second);
+                edges.removePolygon(pieces[other], other);
+                pieces[first] = split[0];
+                pieces[second] = split[1];
+                pieces[other] = null;
+                addPiece(edges, pending, pieces[first], first);
+                addPiece(edges, pending, pieces[second], second);
+                break;
+            }
+        }
+
+        List<int[]> result = new ArrayList<>();
+        for (int[] piece : pieces) {
+            if (piece != null) {
+                result.add(piece);
+            }
+        }
+        return result;
+    }
+
+    private static void addPiece(EdgeMap edges, IntStack pending, int[] piece, int owner) {
+        for (int i = 0; i < piece.length; ++i) {
+            int edge = edges.add(piece[i], piece[(i + 1) % piece.length], owner);
+            if (edges.isShared(edge)) {
+                pending.push(edge);
+            }
+        }
+    }
+
+    private static boolean hasRepeatedVertices(int[] polygon, boolean[] used) {
+        boolean repeated = false;
+        for (int index : polygon) {
+            if (used[index]) {
+                repeated = true;
+            }
+            used[index] = true;
+        }
+        for (int index : polygon) {
+            used[index] = false;
+        }
+        return repeated;
+    }
+
+    /**
+     * <p>Cuts a polygon by a diagonal into two convex pieces that are small enough for Box2D. Returns
+     * <code>null</code> if there is no such diagonal. Every reflex vertex must be an end of the diagonal, so
+     * there are at most two reflex vertices and only diagonals that start at them are tried.</p>
+     */
+    private int[][] splitInTwo(int[] polygon) {
+        int size = polygon.length;
+        if (size > 2 * Settings.maxPolygonVertices - 2) {
+            return null;
+        }
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < size; ++i) {
+            if (!isConvexAt(polygon, i)) {
+                if (first < 0) {
+                    first = i;
+                } else if (second < 0) {
+                    second = i;
+                } else {
+                    return null;
+                }
+            }
+        }
+        if (first < 0) {
+            first = 0;
+        }
+        if (second >= 0) {
+            return splitAt(polygon, first, second);
+        }
+        for (int i = 2; i < size - 1; ++i) {
+            int[][] result = splitAt(polygon, first, (first + i) % size);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private int[][] splitAt(int[] polygon, int from, int to) {
+        int size = polygon.length;
+        int firstSize = (to - from + size) % size + 1;
+        int secondSize = size - firstSize + 2;
+        if (firstSize < 3 || secondSize < 3 || firstSize > Settings.maxPolygonVertices ||
+                secondSize > Settings.maxPolygonVertices) {
+            return null;
+        }
+        int[] first = new int[firstSize];
+        for (int i = 0; i < firstSize; ++i) {
+            first[i] = polygon[(from + i) % size];
+        }
+        int[] second = new int[secondSize];
+        for (int i = 0; i < secondSize; ++i) {
+            second[i] = polygon[(to + i) % size];
+        }
+        return isConvex(first) && isConvex(second) ? new int[][] { first, second } : null;
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * <p>Glues two counter-clockwise pieces that share the edge between <code>a</code> and <code>b</code>.
+     * One piece goes along this edge in one direction, the other piece in the opposite direction.</p>
+     */
+    private static int[] glue(int[] first, int[] second, int a, int b) {
+        int start = findEdge(first, a, b);
+        if (start < 0) {
+            start = findEdge(first, b, a);
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int end = findEdge(second, b, a);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        int[] result = new int[first.length + second.length - 2];
+        int size = 0;
+        for (int i = 1; i <= first.length; ++i) {
+            result[size++] = first[(start + i) % first.length];
+        }
+        for (int i = 2; i < second.length; ++i) {
+            result[size++] = second[(end + i) % second.length];
+        }
+        return result;
+    }
+
+    /**
+     * <p>Tells whether gluing two convex pieces gives a convex piece. Only angles at the ends of the common
+     * edge change, so only these two angles are checked.</p>
+     */
+    private boolean gluesConvex(int[] first, int[] second, int a, int b) {
+        int start = findEdge(first, a, b);
+        if (start < 0) {
+            start = findEdge(first, b, a);
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int end = findEdge(second, b, a);
+        if (start < 0 || end < 0) {
+            return false;
+        }
+        int beforeA = first[(start + first.length - 1) % first.length];
+        int afterB = first[(start + 2) % first.length];
+        int beforeB = second[(end + second.length - 1) % second.length];
+        int afterA = second[(end + 2) % second.length];
+        return isConvexAt(beforeA, a, afterA) && isConvexAt(beforeB, b, afterB);
+    }
+
+    private static int findEdge(int[] piece, int a, int b) {
+        for (int i = 0; i < piece.length; ++i) {
+            if (piece[i] == a && piece[(i + 1) % piece.length] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isConvex(int[] piece) {
+        for (int i = 0; i < piece.length; ++i) {
+            if (!isConvexAt(piece, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isConvexAt(int[] polygon, int index) {
+        int a = polygon[index > 0 ? index - 1 : polygon.length - 1];
+        int b = polygon[index];
+        int c = polygon[index + 1 < polygon.length ? index + 1 : 0];
+        return isConvexAt(a, b, c);
+    }
+
+    private boolean isConvexAt(int previous, int vertex, int next) {
+        long turn = cross(previous, vertex, next);
+        return turn > 0 || turn == 0 && dot(previous, vertex, next) > 0;
+    }
+
+    private long area(int[] polygon) {
+        long sum = 0;
+        for (int i = 0; i < polygon.length; ++i) {
+            int a = polygon[i];
+            int b = polygon[(i + 1) % polygon.length];
+            sum += (long)xs[a] * ys[b] - (long)ys[a] * xs[b];
+        }
+        return sum;
+    }
+
+    private long dot(int a, int b, int c) {
+        return (long)(xs[b] - xs[a]) * (xs[c] - xs[b]) + (long)(ys[b] - ys[a]) * (ys[c] - ys[b]);
+    }
+
+    private long cross(int a, int b, int c) {
+        return (long)(xs[b] - xs[a]) * (ys[c] - ys[a]) - (long)(ys[b] - ys[a]) * (xs[c] - xs[a]);
+    }
+
+    private boolean below(int a, int b) {
+        return ys[a] < ys[b] || ys[a] == ys[b] && xs[a] > xs[b];
+    }
+
+    private int next(int index) {
+        return index + 1 < n ? index + 1 : 0;
+    }
+
+    private int previous(int index) {
+        return index > 0 ? index - 1 : n - 1;
+    }
+
+    private static int indexOf(int[] array, int from, int to, int value) {
+        for (int i = from; i < to; ++i) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Vertex " + value + " is not a neighbour");
+    }
+
+    /**
+     * <p>Maps undirected edges to at most two pieces that have them. Edges are listed per their lower
+     * vertex, since every vertex has only a few edges.</p>
+     */
+    private static class EdgeMap {
+        final int[] heads;
+        int[] nexts;
+        int[] lows;
+        int[] highs;
+        int[] owners;
+        int size;
+
+        public EdgeMap(int vertexCount, int capacity) {
+            heads = new int[vertexCount];
+            Arrays.fill(heads, -1);
+            nexts = new int[capacity];
+            lows = new int[capacity];
+            highs = new int[capacity];
+            owners = new int[2 * capacity];
+        }
+
+        public int find(int a, int b) {
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            for (int edge = heads[low]; edge >= 0; edge = nexts[edge]) {
+                if (highs[edge] == high) {
+                    return edge;
+                }
+            }
+            return -1;
+        }
+
+        public int add(int a, int b, int owner) {
+            int edge = find(a, b);
+            if (edge < 0) {
+                if (size == nexts.length) {
+                    nexts = Arrays.copyOf(nexts, size * 2);
+                    lows = Arrays.copyOf(lows, size * 2);
+                    highs = Arrays.copyOf(highs, size * 2);
+                    owners = Arrays.copyOf(owners, size * 4);
+                }
+                edge = size++;
+                lows[edge] = Math.min(a, b);
+                highs[edge] = Math.max(a, b);
+                nexts[edge] = heads[lows[edge]];
+                heads[lows[edge]] = edge;
+                owners[2 * edge] = owner;
+                owners[2 * edge + 1] = -1;
+            } else if (owners[2 * edge] < 0) {
+                owners[2 * edge] = owner;
+            } else if (owners[2 * edge + 1] < 0) {
+                owners[2 * edge + 1] = owner;
+            } else {
+                throw new IllegalStateException("Edge " + a + "-" + b + " has more than two owners");
+            }
+            return edge;
+        }
+
+        public void remove(int edge, int owner) {
+            if (owners[2 * edge + 1] == owner) {
+                owners[2 * edge + 1] = -1;
+            } else if (owners[2 * edge] == owner) {
+                owners[2 * edge] = owners[2 * edge + 1];
+                owners[2 * edge + 1] = -1;
+            }
+        }
+
+        public void removePolygon(int[] polygon, int owner) {
+            for (int i = 0; i < polygon.length; ++i) {
+                remove(find(polygon[i], polygon[(i + 1) % polygon.length]), owner);
+            }
+        }
+
+        public boolean isShared(int edge) {
+            return owners[2 * edge + 1] >= 0;
+        }
+    }
+
+    private static class IntStack {
+        private int[] data = new int[16];
+        private int size;
+
+        public void push(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        public int pop() {
+            return data[--size];
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
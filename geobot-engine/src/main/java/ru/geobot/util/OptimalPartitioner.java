@@ -0,0 +1,278 @@
+package ru.geobot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jbox2d.common.Settings;
+
+/**
+ * <p>Splits a simple polygon into the least possible number of convex pieces that are cut by diagonals and
+ * have no more than {@link Settings#maxPolygonVertices} vertices each.</p>
+ *
+ * <p>The piece that contains the edge <code>(i, j)</code> of the part of the polygon between vertices
+ * <code>i</code> and <code>j</code> is a convex chain <code>i, c<sub>1</sub>, ..., j</code>, and the parts
+ * cut off by the chain are split independently. So the least number of pieces is found by dynamic programming
+ * over all pairs of vertices, and for each pair the best chain is found by dynamic programming over its last two
+ * vertices. This takes O(n<sup>5</sup>) time in the worst case, which is a fraction of a second for a hundred
+ * vertices, so it is meant for shapes that are split at build time.</p>
+ *
+ * @author Alexey Andreev
+ */
+class OptimalPartitioner {
+    /**
+     * <p>The largest polygon that is split by this class. Larger polygons take too much time.</p>
+     */
+    public static final int MAX_VERTICES = 100;
+    private static final int NONE = Integer.MAX_VALUE / 2;
+    private final List<Vertex> vertices;
+    private final int n;
+    private final int maxSize;
+    private final int[] xs;
+    private final int[] ys;
+    private final boolean[] diagonals;
+    private final int[] pieceCounts;
+    private final int[][] chains;
+    private final int[] chainCosts;
+    private final int[] chainParents;
+
+    private OptimalPartitioner(List<Vertex> vertices) {
+        this.vertices = vertices;
+        n = vertices.size();
+        maxSize = Settings.maxPolygonVertices;
+        xs = new int[n];
+        ys = new int[n];
+        for (int i = 0; i < n; ++i) {
+            Vertex vertex = vertices.get(i);
+            xs[i] = vertex.x;
+            ys[i] = vertex.y;
+        }
+        diagonals = new boolean[n * n];
+        pieceCounts = new int[n * n];
+        chains = new int[n * n][];
+        chainCosts = new int[n * n * maxSize];
+        chainParents = new int[n * n * maxSize];
+    }
+
+    /**
+     * <p>Splits a counter-clockwise polygon into convex pieces. Returns <code>null</code> if the polygon has
+     * more than {@link #MAX_VERTICES} vertices or is degenerate.</p>
+     */
+    public static List<List<Vertex>> triangulate(List<Vertex> ccwVertices) {
+        if (ccwVertices.size() < 3 || ccwVertices.size() > MAX_VERTICES) {
+            return null;
+        }
+        try {
+            return new OptimalPartitioner(ccwVertices).run();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private List<List<Vertex>> run() {
+        for (int i = 0; i < n; ++i) {
+            int j = (i + 1) % n;
+            if (xs[i] == xs[j] && ys[i] == ys[j]) {
+                return null;
+            }
+        }
+        findDiagonals();
+        for (int length = 1; length < n; ++length) {
+            for (int i = 0; i + length < n; ++i) {
+                int j = i + length;
+                if (length == 1) {
+                    pieceCounts[i * n + j] = 0;
+                } else if (diagonals[i * n + j]) {
+                    pieceCounts[i * n + j] = findBestChain(i, j);
+                } else {
+                    pieceCounts[i * n + j] = NONE;
+                }
+            }
+        }
+        if (pieceCounts[n - 1] >= NONE) {
+            return null;
+        }
+
+        List<int[]> pieces = new ArrayList<>();
+        collectPieces(0, n - 1, pieces);
+        long area = 0;
+        List<List<Vertex>> result = new ArrayList<>(pieces.size());
+        for (int[] piece : pieces) {
+            long pieceArea = area(piece);
+            if (pieceArea <= 0) {
+                return null;
+            }
+            area += pieceArea;
+            List<Vertex> polygon = new ArrayList<>(piece.length);
+            for (int index : piece) {
+                polygon.add(vertices.get(index));
+            }
+            result.add(polygon);
+        }
+        int[] all = new int[n];
+        for (int i = 0; i < n; ++i) {
+            all[i] = i;
+        }
+        return area == area(all) ? result : null;
+    }
+
+    private void findDiagonals() {
+        for (int i = 0; i < n; ++i) {
+            for (int j = i + 1; j < n; ++j) {
+                boolean valid = j == i + 1 || i == 0 && j == n - 1 || isDiagonal(i, j);
+                diagonals[i * n + j] = valid;
+                diagonals[j * n + i] = valid;
+            }
+        }
+    }
+
+    private boolean isDiagonal(int a, int b) {
+        if (!isInCone(a, b) || !isInCone(b, a)) {
+            return false;
+        }
+        for (int i = 0; i < n; ++i) {
+            int j = (i + 1) % n;
+            if (i == a || i == b || j == a || j == b) {
+                continue;
+            }
+            if (intersects(a, b, i, j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInCone(int a, int b) {
+        int previous = (a + n - 1) % n;
+        int next = (a + 1) % n;
+        if (cross(previous, a, next) > 0) {
+            return cross(a, b, previous) > 0 && cross(b, a, next) > 0;
+        } else {
+            return !(cross(a, b, next) >= 0 && cross(b, a, previous) >= 0);
+        }
+    }
+
+    private boolean intersects(int a, int b, int c, int d) {
+        long abc = cross(a, b, c);
+        long abd = cross(a, b, d);
+        long cda = cross(c, d, a);
+        long cdb = cross(c, d, b);
+        if ((abc > 0 && abd < 0 || abc < 0 && abd > 0) && (cda > 0 && cdb < 0 || cda < 0 && cdb > 0)) {
+            return true;
+        }
+        return abc == 0 && isBetween(a, b, c) || abd == 0 && isBetween(a, b, d)
+                || cda == 0 && isBetween(c, d, a) || cdb == 0 && isBetween(c, d, b);
+    }
+
+    private boolean isBetween(int a, int b, int c) {
+        return Math.min(xs[a], xs[b]) <= xs[c] && xs[c] <= Math.max(xs[a], xs[b])
+                && Math.min(ys[a], ys[b]) <= ys[c] && ys[c] <= Math.max(ys[a], ys[b]);
+    }
+
+    /**
+     * <p>Finds the convex chain from <code>i</code> to <code>j</code> that gives the least number of pieces for
+     * the part of the polygon between them. A chain is described by its last two vertices and by the number of
+     * its vertices, and the cost of a chain is the number of pieces in the parts it cuts off.</p>
+     */
+    private int findBestChain(int i, int j) {
+        for (int a = i; a < j; ++a) {
+            for (int b = a + 1; b < j; ++b) {
+                int base = (a * n + b) * maxSize;
+                for (int k = 0; k < maxSize; ++k) {
+                    chainCosts[base + k] = NONE;
+                }
+            }
+        }
+        for (int c = i + 1; c < j; ++c) {
+            if (pieceCounts[i * n + c] < NONE && isConvexAt(j, i, c)) {
+                chainCosts[(i * n + c) * maxSize + 2] = pieceCounts[i * n + c];
+            }
+        }
+
+        int best = NONE;
+        int bestA = -1;
+        int bestB = -1;
+        int bestSize = -1;
+        for (int b = i + 1; b < j; ++b) {
+            for (int a = i; a < b; ++a) {
+                int base = (a * n + b) * maxSize;
+                for (int size = 2; size < maxSize; ++size) {
+                    int cost = chainCosts[base + size];
+                    if (cost + 1 >= best) {
+                        continue;
+                    }
+                    for (int c = b + 1; c <= j; ++c) {
+                        int count = pieceCounts[b * n + c];
+                        if (count >= NONE || cost + count + 1 >= best || !isConvexAt(a, b, c)) {
+                            continue;
+                        }
+                        if (c == j) {
+                            if (isConvexAt(b, j, i)) {
+                                best = cost + count + 1;
+                                bestA = a;
+                                bestB = b;
+                                bestSize = size;
+                            }
+                        } else if (size + 1 < maxSize) {
+                            int index = (b * n + c) * maxSize + size + 1;
+                            if (cost + count < chainCosts[index]) {
+                                chainCosts[index] = cost + count;
+                                chainParents[index] = a;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (best >= NONE) {
+            return NONE;
+        }
+
+        int[] chain = new int[bestSize + 1];
+        chain[bestSize] = j;
+        int a = bestA;
+        int b = bestB;
+        for (int size = bestSize; size > 2; --size) {
+            chain[size - 1] = b;
+            int previous = chainParents[(a * n + b) * maxSize + size];
+            b = a;
+            a = previous;
+        }
+        chain[1] = b;
+        chain[0] = a;
+        chains[i * n + j] = chain;
+        return best;
+    }
+
+    private void collectPieces(int i, int j, List<int[]> pieces) {
+        if (j == i + 1) {
+            return;
+        }
+        int[] chain = chains[i * n + j];
+        pieces.add(chain);
+        for (int k = 0; k + 1 < chain.length; ++k) {
+            collectPieces(chain[k], chain[k + 1], pieces);
+        }
+    }
+
+    private boolean isConvexAt(int previous, int vertex, int next) {
+        long turn = cross(previous, vertex, next);
+        return turn > 0 || turn == 0 && dot(previous, vertex, next) > 0;
+    }
+
+    private long area(int[] polygon) {
+        long area = 0;
+        for (int i = 0; i < polygon.length; ++i) {
+            int a = polygon[i];
+            int b = polygon[(i + 1) % polygon.length];
+            area += (long)xs[a] * ys[b] - (long)xs[b] * ys[a];
+        }
+        return area;
+    }
+
+    private long dot(int a, int b, int c) {
+        return (long)(xs[b] - xs[a]) * (xs[c] - xs[b]) + (long)(ys[b] - ys[a]) * (ys[c] - ys[b]);
+    }
+
+    private long cross(int a, int b, int c) {
+        return (long)(xs[b] - xs[a]) * (ys[c] - ys[a]) - (long)(ys[b] - ys[a]) * (xs[c] - xs[a]);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.geobot.util;
+
+import static org.junit.Assert.*;
+import static ru.geobot.util.TestPolygons.*;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class DecompositionModeTest {
+    @Test
+    public void optimalSplitsShippedShapesIntoFewerPieces() throws Exception {
+        int greedyCount = 0;
+        int optimalCount = 0;
+        for (List<Vertex> polygon : shippedPolygons()) {
+            greedyCount += assertOptimalNotWorse(polygon);
+            optimalCount += GeometryUtils.triangulate(polygon, DecompositionMode.OPTIMAL).size();
+        }
+        assertTrue(optimalCount < greedyCount);
+    }
+
+    @Test
+    public void optimalSplitsRandomPolygonsIntoFewerPieces() {
+        Random random = new Random(42);
+        int count = 0;
+        for (int i = 0; i < 1000; ++i) {
+            List<Vertex> polygon = randomSimplePolygon(random, 3 + random.nextInt(i % 10 == 0 ? 100 : 30),
+                    1 + random.nextInt(4));
+            if (polygon == null) {
+                continue;
+            }
+            ++count;
+            assertOptimalNotWorse(polygon);
+        }
+        assertTrue(count > 300);
+    }
+
+    @Test
+    public void optimalSplitsLargePolygonsLikeGreedy() {
+        List<Vertex> polygon = star(OptimalPartitioner.MAX_VERTICES + 50);
+        assertEquals(GeometryUtils.triangulate(polygon, DecompositionMode.GREEDY).size(),
+                assertOptimalNotWorse(polygon));
+    }
+
+    private static List<Vertex> star(int size) {
+        int[] coordinates = new int[size * 2];
+        for (int i = 0; i < size; ++i) {
+            double angle = 2 * Math.PI * i / size;
+            double radius = i % 2 == 0 ? 1000 : 700;
+            coordinates[i * 2] = (int)Math.round(radius * Math.cos(angle));
+            coordinates[i * 2 + 1] = (int)Math.round(radius * Math.sin(angle));
+        }
+        return polygon(coordinates);
+    }
+
+    private static int assertOptimalNotWorse(List<Vertex> polygon) {
+        List<List<Vertex>> greedy = GeometryUtils.triangulate(polygon, DecompositionMode.GREEDY);
+        List<List<Vertex>> optimal = GeometryUtils.triangulate(polygon, DecompositionMode.OPTIMAL);
+        assertDecomposition(polygon, greedy);
+        assertDecomposition(polygon, optimal);
+        assertTrue(optimal.size() <= greedy.size());
+        return greedy.size();
+    }
+}
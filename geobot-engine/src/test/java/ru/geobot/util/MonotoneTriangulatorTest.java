@@ -0,0 +1,101 @@
+package ru.geobot.util;
+
+import static org.junit.Assert.*;
+import static ru.geobot.util.TestPolygons.*;
+import java.util.List;
+import java.util.Random;
+import org.jbox2d.common.Settings;
+import org.junit.Test;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class MonotoneTriangulatorTest {
+    @Test
+    public void splitsShippedShapes() throws Exception {
+        for (List<Vertex> polygon : shippedPolygons()) {
+            List<Vertex> ccw = counterClockwise(polygon);
+            assertDecomposition(ccw, MonotoneTriangulator.triangulate(ccw));
+            assertDecomposition(polygon, GeometryUtils.triangulate(polygon));
+        }
+    }
+
+    @Test
+    public void splitsRandomSimplePolygons() {
+        Random random = new Random(42);
+        int count = 0;
+        for (int i = 0; i < 3000; ++i) {
+            List<Vertex> polygon = randomSimplePolygon(random, 3 + random.nextInt(i % 10 == 0 ? 200 : 30),
+                    1 + random.nextInt(4));
+            if (polygon == null) {
+                continue;
+            }
+            ++count;
+            List<Vertex> ccw = counterClockwise(polygon);
+            assertDecomposition(ccw, MonotoneTriangulator.triangulate(ccw));
+        }
+        assertTrue(count > 1000);
+    }
+
+    @Test
+    public void keepsConvexPolygonWhole() {
+        List<Vertex> square = polygon(0, 0, 10, 0, 10, 10, 0, 10);
+        List<List<Vertex>> pieces = MonotoneTriangulator.triangulate(square);
+        assertDecomposition(square, pieces);
+        assertEquals(1, pieces.size());
+    }
+
+    @Test
+    public void respectsVertexLimit() {
+        int size = 60;
+        List<Vertex> polygon = regularPolygon(size, 1000);
+        List<List<Vertex>> pieces = MonotoneTriangulator.triangulate(polygon);
+        assertDecomposition(polygon, pieces);
+        int perPiece = Settings.maxPolygonVertices - 2;
+        assertTrue(pieces.size() >= (size - 2 + perPiece - 1) / perPiece);
+    }
+
+    @Test
+    public void splitsPolygonWithCollinearVertices() {
+        List<Vertex> polygon = polygon(0, 0, 5, 0, 10, 0, 10, 5, 10, 10, 5, 5, 0, 10, 0, 5);
+        assertDecomposition(polygon, MonotoneTriangulator.triangulate(polygon));
+    }
+
+    @Test
+    public void rejectsRepeatedVertices() {
+        List<Vertex> polygon = polygon(0, 0, 10, 0, 10, 0, 10, 10, 0, 10);
+        assertNull(MonotoneTriangulator.triangulate(polygon));
+    }
+
+    @Test
+    public void rejectsTouchingEdges() {
+        // The tip of the notch touches the bottom edge
+        assertNull(MonotoneTriangulator.triangulate(polygon(0, 0, 20, 0, 20, 20, 12, 20, 10, 0, 8, 20, 0, 20)));
+        // Two squares touching at the corner (10, 10)
+        assertNull(MonotoneTriangulator.triangulate(polygon(0, 0, 10, 0, 10, 10, 20, 10, 20, 20, 10, 20,
+                10, 10, 0, 10)));
+    }
+
+    @Test
+    public void rejectsDegeneratePolygons() {
+        assertNull(MonotoneTriangulator.triangulate(polygon(0, 0, 10, 0)));
+        assertNull(MonotoneTriangulator.triangulate(polygon(0, 0, 5, 0, 10, 0)));
+    }
+
+    @Test
+    public void fallsBackForRepeatedVertices() {
+        List<Vertex> polygon = polygon(0, 0, 10, 0, 10, 0, 10, 10, 0, 10);
+        assertDecomposition(polygon, GeometryUtils.triangulate(polygon));
+    }
+
+    static List<Vertex> regularPolygon(int size, int radius) {
+        int[] coordinates = new int[2 * size];
+        for (int i = 0; i < size; ++i) {
+            double angle = 2 * Math.PI * i / size;
+            coordinates[2 * i] = (int)Math.round(radius * Math.cos(angle));
+            coordinates[2 * i + 1] = (int)Math.round(radius * Math.sin(angle));
+        }
+        return polygon(coordinates);
+    }
+}
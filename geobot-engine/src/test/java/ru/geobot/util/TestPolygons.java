@@ -0,0 +1,195 @@
+package ru.geobot.util;
+
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.jbox2d.common.Settings;
+
+/**
+ * <p>Polygons to test decompositions on, and checks of decompositions.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class TestPolygons {
+    private static final String[] SHAPE_FILES = { "cave1-shape", "cave2-shape", "column", "zaval", "stone16",
+            "gun-shape", "bucket2-clickable-shape", "nippers-shape", "tank-shape", "bomb-shape", "pick-shape",
+            "crane-hanger-shape", "bobbler-shape" };
+
+    private TestPolygons() {
+    }
+
+    public static List<Vertex> polygon(int... coordinates) {
+        List<Vertex> polygon = new ArrayList<>();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            polygon.add(new Vertex(coordinates[i], coordinates[i + 1]));
+        }
+        return polygon;
+    }
+
+    public static List<Vertex> counterClockwise(List<Vertex> polygon) {
+        if (area(polygon) < 0) {
+            polygon = new ArrayList<>(polygon);
+            Collections.reverse(polygon);
+        }
+        return polygon;
+    }
+
+    /**
+     * <p>Reads polygons from copies of some shape files of the game, one polygon per line.</p>
+     */
+    public static List<List<Vertex>> shippedPolygons() throws IOException {
+        List<List<Vertex>> polygons = new ArrayList<>();
+        for (String name : SHAPE_FILES) {
+            InputStream input = TestPolygons.class.getResourceAsStream("shapes/" + name + ".txt");
+            assertNotNull("Shape file not found: " + name, input);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] parts = line.split(" +");
+                    List<Vertex> polygon = new ArrayList<>();
+                    for (int i = 0; i + 1 < parts.length; i += 2) {
+                        polygon.add(new Vertex(Integer.parseInt(parts[i]), Integer.parseInt(parts[i + 1])));
+                    }
+                    if (polygon.size() >= 3) {
+                        polygons.add(polygon);
+                    }
+                }
+            }
+        }
+        return polygons;
+    }
+
+    /**
+     * <p>Makes a simple polygon by walking around a center at random distances and snapping vertices to
+     * a grid, so that there are collinear vertices as well. Returns <code>null</code> if snapping made the
+     * polygon self-intersecting.</p>
+     */
+    public static List<Vertex> randomSimplePolygon(Random random, int size, int grid) {
+        List<Vertex> polygon = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            double angle = 2 * Math.PI * i / size;
+            double radius = 5 + random.nextInt(20);
+            Vertex vertex = new Vertex((int)Math.round(radius * Math.cos(angle) / grid) * grid,
+                    (int)Math.round(radius * Math.sin(angle) / grid) * grid);
+            Vertex last = polygon.isEmpty() ? null : polygon.get(polygon.size() - 1);
+            if (last == null || last.x != vertex.x || last.y != vertex.y) {
+                polygon.add(vertex);
+            }
+        }
+        Vertex first = polygon.get(0);
+        Vertex last = polygon.get(polygon.size() - 1);
+        if (first.x == last.x && first.y == last.y) {
+            polygon.remove(polygon.size() - 1);
+        }
+        return polygon.size() >= 3 && area(polygon) != 0 && isSimple(polygon) ? polygon : null;
+    }
+
+    /**
+     * <p>Checks that pieces are convex, counter-clockwise, small enough for Box2D, made of vertices of the
+     * polygon and cover exactly its area.</p>
+     */
+    public static void assertDecomposition(List<Vertex> polygon, List<List<Vertex>> pieces) {
+        assertNotNull(pieces);
+        Set<Long> vertices = new HashSet<>();
+        for (Vertex vertex : polygon) {
+            vertices.add(key(vertex));
+        }
+        long total = 0;
+        for (List<Vertex> piece : pieces) {
+            assertTrue("Too few vertices: " + piece.size(), piece.size() >= 3);
+            assertTrue("Too many vertices: " + piece.size(), piece.size() <= Settings.maxPolygonVertices);
+            assertTrue("Not convex: " + describe(piece), GeometryUtils.isConvex(piece));
+            long pieceArea = area(piece);
+            assertTrue("Not counter-clockwise: " + describe(piece), pieceArea > 0);
+            for (Vertex vertex : piece) {
+                assertTrue("Not a vertex of the polygon: " + vertex.x + " " + vertex.y,
+                        vertices.contains(key(vertex)));
+            }
+            total += pieceArea;
+        }
+        assertEquals("Area of pieces", Math.abs(area(polygon)), total);
+    }
+
+    /**
+     * <p>Computes twice the signed area of a polygon, positive for counter-clockwise polygons.</p>
+     */
+    public static long area(List<Vertex> polygon) {
+        long area = 0;
+        for (int i = 0; i < polygon.size(); ++i) {
+            Vertex a = polygon.get(i);
+            Vertex b = polygon.get((i + 1) % polygon.size());
+            area += (long)a.x * b.y - (long)b.x * a.y;
+        }
+        return area;
+    }
+
+    private static boolean isSimple(List<Vertex> polygon) {
+        int n = polygon.size();
+        for (int i = 0; i < n; ++i) {
+            Vertex a = polygon.get(i);
+            Vertex b = polygon.get((i + 1) % n);
+            for (int j = i + 1; j < n; ++j) {
+                Vertex c = polygon.get(j);
+                Vertex d = polygon.get((j + 1) % n);
+                if (j == i + 1 || i == 0 && j == n - 1) {
+                    // Neighbouring edges share a vertex and must not go back along each other
+                    Vertex shared = j == i + 1 ? b : a;
+                    Vertex first = j == i + 1 ? a : b;
+                    Vertex second = j == i + 1 ? d : c;
+                    if (cross(first, shared, second) == 0 && (long)(first.x - shared.x) * (second.x - shared.x) +
+                            (long)(first.y - shared.y) * (second.y - shared.y) > 0) {
+                        return false;
+                    }
+                } else if (intersects(a, b, c, d)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean intersects(Vertex a, Vertex b, Vertex c, Vertex d) {
+        long abc = cross(a, b, c);
+        long abd = cross(a, b, d);
+        long cda = cross(c, d, a);
+        long cdb = cross(c, d, b);
+        if ((abc > 0 && abd < 0 || abc < 0 && abd > 0) && (cda > 0 && cdb < 0 || cda < 0 && cdb > 0)) {
+            return true;
+        }
+        return abc == 0 && isBetween(a, b, c) || abd == 0 && isBetween(a, b, d) ||
+                cda == 0 && isBetween(c, d, a) || cdb == 0 && isBetween(c, d, b);
+    }
+
+    private static boolean isBetween(Vertex a, Vertex b, Vertex c) {
+        return Math.min(a.x, b.x) <= c.x && c.x <= Math.max(a.x, b.x) &&
+                Math.min(a.y, b.y) <= c.y && c.y <= Math.max(a.y, b.y);
+    }
+
+    private static long cross(Vertex a, Vertex b, Vertex c) {
+        return (long)(b.x - a.x) * (c.y - a.y) - (long)(b.y - a.y) * (c.x - a.x);
+    }
+
+    private static long key(Vertex vertex) {
+        return ((long)vertex.x << 32) | (vertex.y & 0xFFFFFFFFL);
+    }
+
+    private static String describe(List<Vertex> polygon) {
+        StringBuilder sb = new StringBuilder();
+        for (Vertex vertex : polygon) {
+            sb.append(sb.length() > 0 ? " " : "").append(vertex.x).append(' ').append(vertex.y);
+        }
+        return sb.toString();
+    }
+}
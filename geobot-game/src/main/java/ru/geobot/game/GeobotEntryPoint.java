@@ -1,17 +1,20 @@
 package ru.geobot.game;
 
+import ru.geobot.DirtyRegionProvider;
 import ru.geobot.EntryPoint;
 import ru.geobot.EntryPointCallback;
+import ru.geobot.Game;
 import ru.geobot.Key;
 import ru.geobot.graphics.Color;
 import ru.geobot.graphics.Graphics;
+import ru.geobot.graphics.Rectangle;
 import ru.geobot.resources.ResourceReader;
 
 /**
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
-public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
+public class GeobotEntryPoint implements EntryPoint, GeobotGameManager, DirtyRegionProvider {
     private EntryPoint oldGame;
     private EntryPoint game;
     private long timeOffset;
@@ -22,6 +25,9 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
     private ResourceReader resourceReader;
     private boolean started;
     private EntryPointCallback callback;
+    private EntryPoint paintedGame;
+    private long paintedFadeLevel = -1;
+    private boolean interpolated;
 
     @Override
     public void mouseMove(int x, int y) {
@@ -59,7 +65,7 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
     }
 
     @Override
-    public boolean idle(long time) {
+    public int idle(long time) {
         if (timeOffset == 0) {
             timeOffset = time;
         }
@@ -72,12 +78,12 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
                 oldGame = null;
                 timeOffset = time;
             }
-            return false;
+            return 0;
         } else {
             if (fadeLevel > 0) {
                 fadeLevel = Math.max(0, 255 - (time - timeOffset) / 6);
             }
-            return game != null ? game.idle(time - timeOffset) : false;
+            return game != null ? game.idle(time - timeOffset) : 0;
         }
     }
 
@@ -114,6 +120,25 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
         }
     }
 
+    @Override
+    public boolean getDirtyRegion(Rectangle region) {
+        EntryPoint current = oldGame != null ? oldGame : game;
+        boolean changed = fadeLevel != paintedFadeLevel || current != paintedGame;
+        paintedFadeLevel = fadeLevel;
+        paintedGame = current;
+        if (fadeLevel == 255) {
+            region.x = 0;
+            region.y = 0;
+            region.width = changed ? width : 0;
+            region.height = changed ? height : 0;
+            return true;
+        }
+        if (changed || !(current instanceof DirtyRegionProvider)) {
+            return false;
+        }
+        return ((DirtyRegionProvider)current).getDirtyRegion(region);
+    }
+
     @Override
     public void start(EntryPointCallback callback) {
         this.callback = callback;
@@ -138,6 +163,18 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
         }
     }
 
+    public boolean isInterpolated() {
+        return interpolated;
+    }
+
+    /**
+     * <p>Sets whether games are interpolated, see {@link Game#setInterpolated(boolean)}. Applies to games set
+     * after this call.</p>
+     */
+    public void setInterpolated(boolean interpolated) {
+        this.interpolated = interpolated;
+    }
+
     @Override
     public EntryPoint getGame() {
         return game;
@@ -152,6 +189,9 @@ public class GeobotEntryPoint implements EntryPoint, GeobotGameManager {
         this.game = game;
         timeOffset = currentTime;
         if (game != null) {
+            if (game instanceof Game) {
+                ((Game)game).setInterpolated(interpolated);
+            }
             if (resourceReader != null) {
                 game.setResourceReader(resourceReader);
             }
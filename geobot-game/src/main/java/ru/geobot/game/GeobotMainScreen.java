@@ -1,20 +1,23 @@
 package ru.geobot.game;
 
+import ru.geobot.DirtyRegionProvider;
 import ru.geobot.EntryPoint;
 import ru.geobot.EntryPointCallback;
+import ru.geobot.Game;
 import ru.geobot.Key;
 import ru.geobot.game.ui.GameOverMenu;
 import ru.geobot.game.ui.MainMenu;
 import ru.geobot.graphics.Color;
 import ru.geobot.graphics.Graphics;
 import ru.geobot.graphics.ImageUtil;
+import ru.geobot.graphics.Rectangle;
 import ru.geobot.resources.ResourceReader;
 
 /**
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
-public class GeobotMainScreen implements EntryPoint {
+public class GeobotMainScreen implements EntryPoint, DirtyRegionProvider {
     private static int buttonWidth = 120;
     private static int buttonHeight = 111;
     private static int buttonPadding = 20;
@@ -32,6 +35,10 @@ public class GeobotMainScreen implements EntryPoint {
     private GameResources resources;
     private int mouseX;
     private int mouseY;
+    private boolean menuPainted = true;
+    private boolean menuButtonHoverPainted;
+    private Rectangle menuButtonRegion = new Rectangle(0, 0, 0, 0);
+    private boolean interpolated;
 
     public GeobotMainScreen() {
         mainMenu = new MainMenu(this);
@@ -93,12 +100,12 @@ public class GeobotMainScreen implements EntryPoint {
     }
 
     @Override
-    public boolean idle(long time) {
+    public int idle(long time) {
         currentTime = time;
         if (!displayingMenu) {
             return inner.idle(time - timeOffset);
         } else {
-            return false;
+            return 0;
         }
     }
 
@@ -137,6 +144,28 @@ public class GeobotMainScreen implements EntryPoint {
         }
     }
 
+    @Override
+    public boolean getDirtyRegion(Rectangle region) {
+        boolean menuWasPainted = menuPainted;
+        boolean hoverChanged = menuButtonHover() != menuButtonHoverPainted;
+        menuPainted = displayingMenu;
+        menuButtonHoverPainted = menuButtonHover();
+        if (displayingMenu || menuWasPainted || !(inner instanceof DirtyRegionProvider)) {
+            return false;
+        }
+        if (!((DirtyRegionProvider)inner).getDirtyRegion(region)) {
+            return false;
+        }
+        if (hoverChanged) {
+            menuButtonRegion.x = width - buttonWidth - buttonPadding;
+            menuButtonRegion.y = height - buttonHeight - buttonPadding;
+            menuButtonRegion.width = buttonWidth;
+            menuButtonRegion.height = buttonHeight;
+            region.union(menuButtonRegion);
+        }
+        return true;
+    }
+
     private boolean menuButtonHover() {
         int x = mouseX - width + buttonPadding;
         int y = mouseY - height + buttonPadding;
@@ -191,6 +220,17 @@ public class GeobotMainScreen implements EntryPoint {
         menu.resize(width, height);
     }
 
+    public boolean isInterpolated() {
+        return interpolated;
+    }
+
+    /**
+     * <p>Sets whether games started from the menu are interpolated, see {@link Game#setInterpolated(boolean)}.</p>
+     */
+    public void setInterpolated(boolean interpolated) {
+        this.interpolated = interpolated;
+    }
+
     public void setInner(EntryPoint inner) {
         this.inner = inner;
         inner.setResourceReader(resourceReader);
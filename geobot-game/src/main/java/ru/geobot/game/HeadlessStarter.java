@@ -0,0 +1,71 @@
+package ru.geobot.game;
+
+import ru.geobot.GameTimingAdapter;
+import ru.geobot.HeadlessRunner;
+import ru.geobot.game.caves.Cave1Game;
+import ru.geobot.game.caves.Cave2Game;
+import ru.geobot.resources.ResourceLoader;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class HeadlessStarter {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String cave = args.length > 0 ? args[0] : "cave1";
+        long duration = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 60000;
+        int paintRatio = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        boolean adaptive = false;
+        boolean batching = false;
+        boolean dirty = false;
+        boolean lazy = false;
+        for (int i = 3; i < args.length; ++i) {
+            if (args[i].equals("adaptive")) {
+                adaptive = true;
+            } else if (args[i].equals("batching")) {
+                batching = true;
+            } else if (args[i].equals("dirty")) {
+                dirty = true;
+            } else if (args[i].equals("lazy")) {
+                lazy = true;
+            }
+        }
+        ResourceLoader.setLazyImages(lazy);
+
+        GeobotEntryPoint entryPoint = new GeobotEntryPoint();
+        final GeobotGame game;
+        switch (cave) {
+            case "cave1":
+                game = new Cave1Game(entryPoint);
+                break;
+            case "cave2":
+                game = new Cave2Game(entryPoint);
+                break;
+            default:
+                System.err.println("Unknown cave: " + cave + ". Use cave1 or cave2");
+                System.exit(1);
+                return;
+        }
+        if (adaptive) {
+            game.setAdaptiveIterations(true);
+            game.addTimingListener(new GameTimingAdapter() {
+                @Override public void iterationsChanged(int velocityIterations, int positionIterations) {
+                    System.out.println("Iterations changed: velocity " + velocityIterations + ", position " +
+                            positionIterations);
+                }
+            });
+        }
+        entryPoint.setGame(game);
+
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.setPaintRatio(paintRatio);
+        runner.setBatching(batching);
+        runner.setDirtyRegions(dirty);
+        HeadlessRunner.Report report = runner.run(entryPoint, duration);
+        System.out.println(report);
+        if (lazy) {
+            System.out.println(ResourceLoader.getImageMemoryStatistics());
+        }
+    }
+}
@@ -9,15 +9,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import javax.imageio.ImageIO;
 import javax.swing.JComponent;
+import ru.geobot.ProgressListener;
 
 /**
  *
  * @author Alexey Andreev <konsoletyper@gmail.com>
  */
-public class LoadProgressComponent extends JComponent {
+public class LoadProgressComponent extends JComponent implements ProgressListener {
     private static final long serialVersionUID = -8998272086113068186L;
+    private static final Color PROGRESS_COLOR = new Color(255, 255, 255, 160);
     private BufferedImage startScreen;
     private BufferedImage smallStartScreen;
+    private volatile int current;
+    private volatile int total;
 
     public LoadProgressComponent() {
         try (InputStream input = LoadProgressComponent.class.getResourceAsStream("main-screen.png")) {
@@ -43,5 +47,26 @@ public class LoadProgressComponent extends JComponent {
         transform.translate((getWidth() - width) / 2, 0);
         transform.scale(getHeight() / (double)image.getHeight(), getHeight() / (double)image.getHeight());
         gfx.drawRenderedImage(image, transform);
+
+        int total = this.total;
+        if (total > 0) {
+            int barWidth = getWidth() / 2;
+            int barHeight = Math.max(4, getHeight() / 100);
+            int x = (getWidth() - barWidth) / 2;
+            int y = getHeight() - barHeight * 4;
+            gfx.setColor(PROGRESS_COLOR);
+            gfx.drawRect(x, y, barWidth, barHeight);
+            gfx.fillRect(x, y, barWidth * Math.min(current, total) / total, barHeight);
+        }
+    }
+
+    /**
+     * <p>Updates the progress bar. Can be called from any thread.</p>
+     */
+    @Override
+    public void progressChanged(int current, int total) {
+        this.current = current;
+        this.total = total;
+        repaint();
     }
 }
@@ -10,6 +10,7 @@ import javax.swing.*;
 import ru.geobot.Game;
 import ru.geobot.ResourcePreloader;
 import ru.geobot.SwingRunner;
+import ru.geobot.resources.ResourceLoader;
 
 /**
  *
@@ -21,15 +22,37 @@ public class Starter {
     private static ResourcePreloader preloader;
 
     public static void main(String[] args) {
-        if (args.length > 0) {
-            if (args[0].equals("debug")) {
+        boolean accelerated = false;
+        boolean threaded = false;
+        boolean batching = false;
+        boolean dirty = false;
+        boolean lazy = false;
+        for (String arg : args) {
+            if (arg.equals("debug")) {
                 debugMode = true;
+            } else if (arg.equals("accelerated")) {
+                accelerated = true;
+            } else if (arg.equals("threaded")) {
+                threaded = true;
+            } else if (arg.equals("batching")) {
+                batching = true;
+            } else if (arg.equals("dirty")) {
+                dirty = true;
+            } else if (arg.equals("lazy")) {
+                lazy = true;
             }
         }
+        ResourceLoader.setLazyImages(lazy);
 
         component = new SwingRunner();
+        component.setAccelerated(accelerated);
+        component.setThreaded(threaded);
+        component.setBatching(batching);
+        component.setDirtyRegions(dirty);
         preloader = new ResourcePreloader(component.getResourceReader());
-        component.run(new GeobotMainScreen());
+        GeobotMainScreen mainScreen = new GeobotMainScreen();
+        mainScreen.setInterpolated(threaded);
+        component.run(mainScreen);
         if (debugMode) {
             startInWindow(component);
             component.suspend();
@@ -46,12 +69,15 @@ public class Starter {
         window.setUndecorated(true);
         window.setFocusable(true);
         window.setLayout(new BoxLayout(window.getContentPane(), BoxLayout.PAGE_AXIS));
-        window.add(new LoadProgressComponent());
+        final LoadProgressComponent progressComponent = new LoadProgressComponent();
+        preloader.addProgressListener(progressComponent);
+        window.add(progressComponent);
         graphicsDevice.setFullScreenWindow(window);
         window.setVisible(true);
         new Thread(new Runnable() {
             @Override public void run() {
                 preloader.preloadResources();
+                preloader.removeProgressListener(progressComponent);
                 SwingUtilities.invokeLater(new Runnable() {
                     @Override public void run() {
                         window.getContentPane().removeAll();
@@ -315,7 +315,9 @@ public class Cave1 {
                 fixtureDef.shape = shape;
                 body.createFixture(fixtureDef);
             }
+            addHitTestBody(body, 0);
             setZIndex(-1);
+            setStaticDrawing(true);
         }
 
         @Override
@@ -332,9 +334,10 @@ public class Cave1 {
 
         @Override
         protected boolean hasPoint(float x, float y) {
+            Vec2 point = new Vec2(x, y);
             Fixture fixture = body.getFixtureList();
             while (fixture != null) {
-                if (fixture.testPoint(new Vec2(x, y))) {
+                if (fixture.testPoint(point)) {
                     return true;
                 }
                 fixture = fixture.getNext();
@@ -347,6 +350,7 @@ public class Cave1 {
             if (stoneColumn != null && columnDestroyed) {
                 getGame().getWorld().destroyBody(stoneColumn);
                 stoneColumn = null;
+                invalidate();
                 new StoneExplosion(game);
             }
             if (game.getRobot().getPosition().x > 12.0f) {
@@ -342,6 +342,7 @@ public class Cave2 {
     private class GunClickSensor extends GameObject {
         public GunClickSensor() {
             super(game);
+            setTicking(false);
             setZIndex(-1);
         }
 
@@ -388,9 +389,9 @@ public class Cave2 {
         @Override
         protected void paint(Graphics graphics) {
             graphics.pushTransform();
-            Vec2 pos = body.getPosition();
+            Vec2 pos = getPaintPosition(body);
             graphics.translate(pos.x, pos.y);
-            graphics.rotate(body.getAngle());
+            graphics.rotate(getPaintAngle(body));
             graphics.translate(0, SCALE * 2.5f);
             graphics.scale(SCALE, -SCALE);
             float alpha = Math.min(1, Math.max(0, (2000 + creationTime - currentTime) / 1000f));
@@ -406,6 +407,9 @@ public class Cave2 {
             currentTime = time;
             if (currentTime - creationTime > 3000) {
                 dispose();
+            } else if (currentTime - creationTime > 1000) {
+                Vec2 pos = body.getPosition();
+                repaint(pos.x - SCALE * 20, pos.y - SCALE * 20, SCALE * 40, SCALE * 40);
             }
             super.time(time);
         }
@@ -430,7 +434,8 @@ public class Cave2 {
         builder.getFixtureDef().restitution = 0.5f;
         builder.setRealHeight(SCALE * 60);
         nippers = builder.build();
-        nippers.addListener(nippersListener);
+        nippers.setSleepingAllowed(false);
+        nippers.addListener(nippersListener, true);
     }
 
     private GameObjectAdapter nippersListener = new GameObjectAdapter() {
@@ -523,6 +528,8 @@ public class Cave2 {
     }
 
     private class Crane extends GameObject {
+        private float patchAlpha = Float.NaN;
+
         public Crane() {
             super(game);
         }
@@ -533,19 +540,19 @@ public class Cave2 {
             ImageUtil platform = new ImageUtil(craneResources.platform());
             platform.draw(graphics, pos.x + SCALE * 195, pos.y + SCALE * 63, SCALE * 947, -SCALE * 46);
 
-            pos = crane.getPosition();
+            pos = getPaintPosition(crane);
             ImageUtil craneImage = new ImageUtil(craneResources.crane());
             graphics.pushTransform();
             graphics.translate(pos.x, pos.y + SCALE * 25.5f);
-            graphics.rotate(crane.getAngle());
+            graphics.rotate(getPaintAngle(crane));
             craneImage.draw(graphics, -SCALE * 25, SCALE * 25, SCALE * 51, -SCALE * 51);
             graphics.popTransform();
 
             graphics.pushTransform();
-            pos = hanger.getPosition();
+            pos = getPaintPosition(hanger);
             ImageUtil hangerImage = new ImageUtil(craneResources.hanger());
             graphics.translate(pos.x, pos.y);
-            graphics.rotate(hanger.getAngle());
+            graphics.rotate(getPaintAngle(hanger));
             hangerImage.draw(graphics, 0, SCALE * 72, SCALE * 53, -SCALE * 72);
             graphics.popTransform();
 
@@ -556,9 +563,7 @@ public class Cave2 {
             water.draw(graphics, 514, 494, 233, -494, 0.4f);
             graphics.popClip();
             ImageUtil patch = new ImageUtil(caveResources.holePatch());
-            float alpha = -0.5f + Math.abs(game.getRobot().getPosition().x - 600 * SCALE) / 1.2f;
-            alpha = Math.max(0f, Math.min(1f, alpha));
-            patch.draw(graphics, 494, 502, 278, -500, alpha);
+            patch.draw(graphics, 494, 502, 278, -500, !Float.isNaN(patchAlpha) ? patchAlpha : getPatchAlpha());
             graphics.popTransform();
         }
 
@@ -574,6 +579,17 @@ public class Cave2 {
 
             hangerHolder.setTransform(new Vec2(pos, h), 0);
             crane.setTransform(new Vec2(pos, SCALE * 1240), 0);
+
+            float alpha = getPatchAlpha();
+            if (alpha != patchAlpha) {
+                patchAlpha = alpha;
+                repaint(SCALE * 494, SCALE * 2, SCALE * 278, SCALE * 500);
+            }
+        }
+
+        private float getPatchAlpha() {
+            float alpha = -0.5f + Math.abs(game.getRobot().getPosition().x - 600 * SCALE) / 1.2f;
+            return Math.max(0f, Math.min(1f, alpha));
         }
     }
 
@@ -603,7 +619,10 @@ public class Cave2 {
                 fixtureDef.shape = shape;
                 body.createFixture(fixtureDef);
             }
+            addHitTestBody(body, 0);
+            setTicking(false);
             setZIndex(-1);
+            setStaticDrawing(true);
         }
 
         @Override
@@ -627,9 +646,10 @@ public class Cave2 {
 
         @Override
         protected boolean hasPoint(float x, float y) {
+            Vec2 point = new Vec2(x, y);
             Fixture fixture = body.getFixtureList();
             while (fixture != null) {
-                if (fixture.testPoint(new Vec2(x, y))) {
+                if (fixture.testPoint(point)) {
                     return true;
                 }
                 fixture = fixture.getNext();
@@ -691,9 +711,10 @@ public class Cave2 {
 
         @Override
         protected void time(long time) {
-            if (waterLevelGrowing) {
+            if (waterLevelGrowing && waterLevel < 120) {
                 waterLevel = Math.min(waterLevel + 0.1f, 120);
                 bobbler.setWaterLevel(waterLevel * SCALE);
+                repaint(SCALE * 514, 0, SCALE * 233, SCALE * 494);
             }
         }
     }
@@ -735,10 +756,14 @@ public class Cave2 {
             }
             opened = true;
             openStartTime = currentTime;
+            repaint();
         }
 
         @Override
         protected void time(long time) {
+            if (opened && currentTime <= openStartTime + 400 && time > openStartTime + 400) {
+                repaint();
+            }
             currentTime = time;
             if (opened && time >= openStartTime + 2000) {
                 game.stop();
@@ -5,6 +5,7 @@ import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
 import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.Filter;
 import org.jbox2d.dynamics.FixtureDef;
 import org.jbox2d.dynamics.joints.RevoluteJoint;
 import org.jbox2d.dynamics.joints.RevoluteJointDef;
@@ -81,20 +82,20 @@ public class StoneExplosion {
         stoneBuilder.getFixtureDef().density = 0.3f;
         stoneBuilder.getFixtureDef().restitution = 0.2f;
         stoneBuilder.getFixtureDef().friction = 0.97f;
+        stoneBuilder.getBodyDef().type = BodyType.DYNAMIC;
+        float scale = 13.333f / 2500;
+        Vec2[] positions = new Vec2[61];
+        Filter[] filters = new Filter[61];
         for (int i = 0; i < 61; ++i) {
             int offsetX = 1795 + offsets[i * 2];
             int offsetY = (1406 - 437) - offsets[i * 2 + 1];
-            stoneBuilder.getFixtureDef().filter.maskBits = offsets[i * 2 + 1] > 700 ? 0x10F0 : 0x1000;
-            stoneBuilder.getFixtureDef().filter.categoryBits = stoneBuilder.getFixtureDef().filter.maskBits;
-            PolygonShape[] fixtures = shapes[i].create(13.333f / 2500);
-            float height = height(fixtures);
-            stoneBuilder.getBodyDef().position.x = offsetX * (13.333f / 2500);
-            stoneBuilder.getBodyDef().position.y = (offsetY - height) * (13.333f / 2500);
-            stoneBuilder.setImage(images[i]);
-            stoneBuilder.setRealHeight(images[i].getHeight() * 13.333f / 2500);
-            stoneBuilder.setShape(shapes[i]);
-            stoneBuilder.getBodyDef().type = BodyType.DYNAMIC;
-            final BodyObject stone = stoneBuilder.build();
+            float height = height(shapes[i].getVertices()) * scale;
+            positions[i] = new Vec2(offsetX * scale, (offsetY - height) * scale);
+            filters[i] = new Filter();
+            filters[i].maskBits = offsets[i * 2 + 1] > 700 ? 0x10F0 : 0x1000;
+            filters[i].categoryBits = filters[i].maskBits;
+        }
+        for (final BodyObject stone : stoneBuilder.build(positions, shapes, images, filters, scale)) {
             stone.addListener(new GameObjectAdapter() {
                 @Override public boolean click() {
                     stoneClicked(stone);
@@ -116,11 +117,11 @@ public class StoneExplosion {
         body.createFixture(fixtureDef);
     }
 
-    private float height(PolygonShape[] shapes) {
+    private float height(float[][] pieces) {
         float height = 0;
-        for (PolygonShape shape : shapes) {
-            for (Vec2 pt : shape.getVertices()) {
-                height = Math.max(height, pt.y);
+        for (float[] piece : pieces) {
+            for (int i = 1; i < piece.length; i += 2) {
+                height = Math.max(height, piece[i]);
             }
         }
         return height;
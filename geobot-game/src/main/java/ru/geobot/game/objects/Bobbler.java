@@ -60,8 +60,9 @@ public class Bobbler extends GameObject {
     protected void paint(Graphics graphics) {
         graphics.pushTransform();
         ImageUtil image = new ImageUtil(resources.image());
-        graphics.translate(body.getPosition().x, body.getPosition().y);
-        graphics.rotate(body.getAngle());
+        Vec2 pos = getPaintPosition(body);
+        graphics.translate(pos.x, pos.y);
+        graphics.rotate(getPaintAngle(body));
         graphics.scale(Cave2.SCALE, -Cave2.SCALE);
         graphics.translate(0, -image.getHeight());
         image.draw(graphics);
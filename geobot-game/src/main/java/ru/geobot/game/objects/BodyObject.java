@@ -7,6 +7,7 @@ import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.Fixture;
 import ru.geobot.Game;
 import ru.geobot.GameObject;
+import ru.geobot.GameObjectListener;
 import ru.geobot.graphics.Graphics;
 import ru.geobot.resources.Image;
 
@@ -20,17 +21,20 @@ public class BodyObject extends GameObject {
     Image image;
     float scale;
     int zIndex = 1;
+    private Vec2 point = new Vec2();
+    private boolean sleepingAllowed = true;
 
     BodyObject(Game game) {
         super(game);
+        setTicking(false);
     }
 
     @Override
     protected void paint(Graphics graphics) {
         graphics.pushTransform();
-        Vec2 pos = body.getPosition();
+        Vec2 pos = getPaintPosition(body);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(body.getAngle());
+        graphics.rotate(getPaintAngle(body));
         graphics.scale(scale, -scale);
         graphics.translate(0, -image.getHeight());
         image.draw(graphics);
@@ -41,9 +45,16 @@ public class BodyObject extends GameObject {
         return body;
     }
 
+    void initHitTest(float margin) {
+        if (!Float.isInfinite(margin)) {
+            addHitTestBody(body, margin);
+        }
+    }
+
     @Override
     protected boolean hasPoint(float x, float y) {
-        Vec2 v = new Vec2(x, y);
+        Vec2 v = point;
+        v.set(x, y);
         if (selectionShapes != null) {
             for (Shape shape : selectionShapes) {
                 if (shape.testPoint(body.getTransform(), v)) {
@@ -65,7 +76,10 @@ public class BodyObject extends GameObject {
     }
 
     public void setImage(Image image) {
-        this.image = image;
+        if (this.image != image) {
+            this.image = image;
+            repaint();
+        }
     }
 
     @Override
@@ -73,6 +87,22 @@ public class BodyObject extends GameObject {
         getGame().getWorld().destroyBody(body);
     }
 
+    @Override
+    protected boolean isSleeping() {
+        return sleepingAllowed && !body.isAwake();
+    }
+
+    public boolean isSleepingAllowed() {
+        return sleepingAllowed;
+    }
+
+    /**
+     * <p>Sets whether listeners stop receiving {@link GameObjectListener#time(long)} while the body sleeps.</p>
+     */
+    public void setSleepingAllowed(boolean sleepingAllowed) {
+        this.sleepingAllowed = sleepingAllowed;
+    }
+
     public void changeZIndex(int zIndex) {
         super.setZIndex(zIndex);
     }
@@ -6,9 +6,11 @@ import java.util.List;
 import org.jbox2d.collision.shapes.CircleShape;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.Filter;
 import org.jbox2d.dynamics.Fixture;
 import org.jbox2d.dynamics.FixtureDef;
 import ru.geobot.Game;
@@ -57,26 +59,111 @@ public class BodyObjectBuilder {
     }
 
     public BodyObject build() {
+        return build(image, shape, realHeight / image.getHeight());
+    }
+
+    /**
+     * <p>Builds an object per position in one batch, see {@link Game#beginBatch()}. Objects take their shapes,
+     * images and collision filters from the arrays and everything else from this builder, and their images are
+     * drawn at <code>scale</code> world units per pixel instead of being stretched to the real height. When
+     * <code>filters</code> is <code>null</code>, the filter of the fixture definition is used.</p>
+     */
+    public BodyObject[] build(Vec2[] positions, PolygonalBodyFactory[] shapes, Image[] images, Filter[] filters,
+            float scale) {
+        BodyObject[] objects = new BodyObject[positions.length];
+        Vec2 position = bodyDef.position;
+        Filter filter = fixtureDef.filter;
+        game.beginBatch();
+        try {
+            for (int i = 0; i < objects.length; ++i) {
+                bodyDef.position = positions[i];
+                if (filters != null) {
+                    fixtureDef.filter = filters[i];
+                }
+                objects[i] = build(images[i], shapes[i], scale);
+            }
+        } finally {
+            bodyDef.position = position;
+            fixtureDef.filter = filter;
+            game.endBatch();
+        }
+        return objects;
+    }
+
+    private BodyObject build(Image image, PolygonalBodyFactory bodyShape, float scale) {
         BodyObject object = new BodyObject(game);
-        object.scale = realHeight / image.getHeight();
+        object.scale = scale;
         object.image = image;
         object.body = game.getWorld().createBody(bodyDef);
-        for (PolygonShape part : shape.create(object.scale)) {
-            fixtureDef.shape = part;
-            object.body.createFixture(fixtureDef);
-        }
+        addFixtures(object.body, bodyShape.create(scale));
         if (selectionShape != null) {
             List<Shape> shapes = new ArrayList<>();
             for (Shape shape : selectionShape.create(object.scale)) {
                 shapes.add(shape);
             }
             object.selectionShapes = shapes;
+            object.initHitTest(getSelectionMargin(object.body, shapes));
         } else {
             object.selectionShapes = createSelectionShapes(object.body, 0.12f);
+            object.initHitTest(0.12f);
         }
         return object;
     }
 
+    /**
+     * <p>Adds fixtures without density first and then computes mass of the body once, since a body computes its
+     * mass anew after each fixture with density.</p>
+     */
+    private void addFixtures(Body body, PolygonShape[] parts) {
+        float density = fixtureDef.density;
+        fixtureDef.density = 0;
+        try {
+            for (PolygonShape part : parts) {
+                fixtureDef.shape = part;
+                body.createFixture(fixtureDef);
+            }
+        } finally {
+            fixtureDef.density = density;
+        }
+        if (density > 0) {
+            for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+                fixture.setDensity(density);
+            }
+            body.resetMassData();
+        }
+    }
+
+    /**
+     * <p>Finds a distance such that every point of the selection shapes lies within this distance of some
+     * vertex of body's fixtures, regardless of body's rotation.</p>
+     */
+    private float getSelectionMargin(Body body, List<Shape> selectionShapes) {
+        float margin = Float.POSITIVE_INFINITY;
+        for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
+            if (!(fixture.getShape() instanceof PolygonShape)) {
+                continue;
+            }
+            PolygonShape polygon = (PolygonShape)fixture.getShape();
+            for (int i = 0; i < polygon.getVertexCount(); ++i) {
+                Vec2 center = polygon.getVertex(i);
+                float distance = 0;
+                for (Shape shape : selectionShapes) {
+                    if (shape instanceof PolygonShape) {
+                        PolygonShape selectionPolygon = (PolygonShape)shape;
+                        for (int j = 0; j < selectionPolygon.getVertexCount(); ++j) {
+                            distance = Math.max(distance, MathUtils.distance(center, selectionPolygon.getVertex(j)));
+                        }
+                    } else if (shape instanceof CircleShape) {
+                        CircleShape circle = (CircleShape)shape;
+                        distance = Math.max(distance, MathUtils.distance(center, circle.m_p) + circle.m_radius);
+                    }
+                }
+                margin = Math.min(margin, distance);
+            }
+        }
+        return margin;
+    }
+
     private List<Shape> createSelectionShapes(Body body, float distance) {
         List<Shape> shapes = new ArrayList<>();
         for (Fixture fixture = body.getFixtureList(); fixture != null; fixture = fixture.getNext()) {
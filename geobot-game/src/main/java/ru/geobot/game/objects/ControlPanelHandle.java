@@ -28,6 +28,7 @@ public class ControlPanelHandle extends GameObject {
 
     public ControlPanelHandle(GeobotGame game, float x, float y) {
         super(game);
+        setTicking(false);
         this.game = game;
         BodyDef bodyDef = new BodyDef();
         bodyDef.type = BodyType.DYNAMIC;
@@ -43,6 +44,7 @@ public class ControlPanelHandle extends GameObject {
         fixtureDef.filter.categoryBits = 2;
         fixtureDef.filter.maskBits = 2;
         body.createFixture(fixtureDef);
+        addHitTestBody(body, 4 * Cave2.SCALE);
         resources = game.loadResources(ControlPanelResources.class);
     }
 
@@ -53,11 +55,11 @@ public class ControlPanelHandle extends GameObject {
     @Override
     protected void paint(Graphics graphics) {
         ImageUtil image = new ImageUtil(resources.handle());
-        Vec2 pos = body.getPosition();
+        Vec2 pos = getPaintPosition(body);
         graphics.pushTransform();
         graphics.translate(pos.x, pos.y);
         graphics.scale(Cave2.SCALE, Cave2.SCALE);
-        graphics.rotate(body.getAngle());
+        graphics.rotate(getPaintAngle(body));
         image.draw(graphics, 7, 7, 14, -14);
         graphics.popTransform();
     }
@@ -65,9 +67,10 @@ public class ControlPanelHandle extends GameObject {
     @Override
     protected boolean hasPoint(float x, float y) {
         float radius = 25 * Cave2.SCALE;
-        Vec2 pt = new Vec2(x, y);
-        pt.subLocal(body.getPosition());
-        return pt.lengthSquared() < radius * radius;
+        Vec2 pos = body.getPosition();
+        float dx = x - pos.x;
+        float dy = y - pos.y;
+        return dx * dx + dy * dy < radius * radius;
     }
 
     @Override
@@ -64,6 +64,7 @@ public class Robot extends GameObject {
     private boolean armForced = true;
     private Runnable pickAction;
     private boolean carriesObject;
+    private AffineTransform transform = new AffineTransform();
 
     private static enum Direction {
         LEFT,
@@ -519,6 +520,24 @@ public class Robot extends GameObject {
         return shape;
     }
 
+    /**
+     * <p>Repaints the square around the point the claws rotate about that holds the claws at any angle.</p>
+     */
+    private void repaintClaws() {
+        Image upperClaw = images.upperClaw();
+        Image lowerClaw = images.lowerClaw();
+        Image clawMount = images.clawMount();
+        float radius = length(upperClaw.getWidth(), upperClaw.getHeight());
+        radius = Math.max(radius, length(lowerClaw.getWidth() + 2, lowerClaw.getHeight()));
+        radius = scale(Math.max(radius, length(clawMount.getWidth() / 2f, clawMount.getHeight() / 2f)));
+        Vec2 center = getHand().getWorldPoint(new Vec2(scale(images.arm4().getWidth()), 0));
+        repaint(center.x - radius, center.y - radius, 2 * radius, 2 * radius);
+    }
+
+    private static float length(float x, float y) {
+        return (float)Math.sqrt(x * x + y * y);
+    }
+
     private float scale(float x) {
         return x * SCALE;
     }
@@ -542,6 +561,7 @@ public class Robot extends GameObject {
                 pickAction = null;
                 if (currentDirection == Direction.LEFT) {
                     currentDirection = Direction.FACE;
+                    repaint();
                     desiredDirection = Direction.RIGHT;
                     directionSetTime = currentTime + 400;
                     destroyAntenna();
@@ -553,6 +573,7 @@ public class Robot extends GameObject {
                 pickAction = null;
                 if (currentDirection == Direction.RIGHT) {
                     currentDirection = Direction.FACE;
+                    repaint();
                     desiredDirection = Direction.LEFT;
                     directionSetTime = currentTime + 400;
                     destroyAntenna();
@@ -636,6 +657,7 @@ public class Robot extends GameObject {
             if (time > directionSetTime) {
                 directionSetTime = -1;
                 currentDirection = desiredDirection;
+                repaint();
                 destroyAntenna();
                 createAntenna();
             }
@@ -645,11 +667,15 @@ public class Robot extends GameObject {
     }
 
     private void fixArm() {
+        float oldClawsAngle = clawsAngle;
         if (carriesObject) {
             clawsAngle = Math.max(0, clawsAngle - (float)Math.PI / 30);
         } else {
             clawsAngle = Math.min((float)Math.PI * 35 / 180, clawsAngle + (float)Math.PI / 30);
         }
+        if (clawsAngle != oldClawsAngle) {
+            repaintClaws();
+        }
 
         if (freeArm || !armForced) {
             return;
@@ -744,7 +770,7 @@ public class Robot extends GameObject {
     @Override
     protected void paint(Graphics graphics) {
         Vec2 pos;
-        AffineTransform transform = graphics.getTransform();
+        graphics.getTransform(transform);
         ImageUtil bodyImage = new ImageUtil(images.body());
         ImageUtil headRightImage = new ImageUtil(images.headRight());
         ImageUtil headLeftImage = new ImageUtil(images.headLeft());
@@ -757,75 +783,75 @@ public class Robot extends GameObject {
         ImageUtil smallRightWheelImage = new ImageUtil(images.smallRightWheel());
 
         graphics.setTransform(transform);
-        drawTrack(graphics, leftWheel.getPosition(), scale(71), leftSmallWheel.getPosition(),
+        drawTrack(graphics, getPaintPosition(leftWheel), scale(71), getPaintPosition(leftSmallWheel),
                 scale(30), scale(12));
-        drawTrack(graphics, rightWheel.getPosition(), scale(71), rightSmallWheel.getPosition(),
+        drawTrack(graphics, getPaintPosition(rightWheel), scale(71), getPaintPosition(rightSmallWheel),
                 scale(30), scale(12));
 
         graphics.setTransform(transform);
-        pos = leftWheel.getPosition();
+        pos = getPaintPosition(leftWheel);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftWheel.getAngle());
+        graphics.rotate(getPaintAngle(leftWheel));
         graphics.scale(SCALE, SCALE);
         graphics.translate(-168f / 2, -170f / 2);
         leftWheelImage.draw(graphics, 0, 170, 168, -170f);
 
         graphics.setTransform(transform);
-        pos = rightWheel.getWorldCenter();
+        pos = getPaintWorldPoint(rightWheel, rightWheel.getLocalCenter());
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightWheel.getAngle());
+        graphics.rotate(getPaintAngle(rightWheel));
         graphics.scale(SCALE, SCALE);
         graphics.translate(-168f / 2, -170f / 2);
         rightWheelImage.draw(graphics, 0, 170, 168, -170f);
 
         graphics.setTransform(transform);
-        pos = leftSmallWheel.getPosition();
+        pos = getPaintPosition(leftSmallWheel);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftSmallWheel.getAngle());
+        graphics.rotate(getPaintAngle(leftSmallWheel));
         graphics.scale(SCALE, SCALE);
         graphics.translate(-30, -30);
         smallLeftWheelImage.draw(graphics, 0, 60, 60, -60);
 
         graphics.setTransform(transform);
-        pos = rightSmallWheel.getPosition();
+        pos = getPaintPosition(rightSmallWheel);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightSmallWheel.getAngle());
+        graphics.rotate(getPaintAngle(rightSmallWheel));
         graphics.scale(SCALE, SCALE);
         graphics.translate(-30, -30);
         smallRightWheelImage.draw(graphics, 0, 60, 60, -60);
 
         graphics.setTransform(transform);
-        pos = leftAxle.getPosition();
+        pos = getPaintPosition(leftAxle);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(leftAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         axleImage.draw(graphics, -7, 150, 14, -110);
 
-        pos = rightAxle.getPosition();
+        pos = getPaintPosition(rightAxle);
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(rightAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         axleImage.draw(graphics, -7, 150, 14, -110);
 
-        pos = leftSmallAxle.getPosition();
+        pos = getPaintPosition(leftSmallAxle);
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftSmallAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(leftSmallAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         axleImage.draw(graphics, -7, 126, 14, -126);
 
-        pos = rightSmallAxle.getPosition();
+        pos = getPaintPosition(rightSmallAxle);
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightSmallAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(rightSmallAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         axleImage.draw(graphics, -7, 126, 14, -126);
 
-        pos = body.getPosition();
+        pos = getPaintPosition(body);
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(body.getAngle());
+        graphics.rotate(getPaintAngle(body));
         graphics.scale(SCALE, SCALE);
         bodyImage.draw(graphics, 0, 239, 336, -244);
         switch (currentDirection) {
@@ -833,7 +859,7 @@ public class Robot extends GameObject {
                 drawAntenna(graphics, transform);
                 graphics.setTransform(transform);
                 graphics.translate(pos.x, pos.y);
-                graphics.rotate(body.getAngle());
+                graphics.rotate(getPaintAngle(body));
                 graphics.scale(SCALE, SCALE);
                 headLeftImage.draw(graphics, -21, 238 + 326, 349, -326);
                 break;
@@ -847,35 +873,31 @@ public class Robot extends GameObject {
                 break;
         }
 
-        pos = new Vec2();
-        leftAxleJoint.getAnchorA(pos);
+        pos = getPaintWorldPoint(leftAxleJoint.getBodyA(), leftAxleJoint.getLocalAnchorA());
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(leftAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         damperImage.draw(graphics, -23f / 2, 71, 23f, -71);
 
-        pos = new Vec2();
-        rightAxleJoint.getAnchorA(pos);
+        pos = getPaintWorldPoint(rightAxleJoint.getBodyA(), rightAxleJoint.getLocalAnchorA());
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(rightAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         damperImage.draw(graphics, -23f / 2, 71, 23f, -71);
 
-        pos = new Vec2();
-        leftSmallAxleJoint.getAnchorA(pos);
+        pos = getPaintWorldPoint(leftSmallAxleJoint.getBodyA(), leftSmallAxleJoint.getLocalAnchorA());
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(leftSmallAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(leftSmallAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         damperImage.draw(graphics, -23f / 2, 71, 23f, -71);
 
-        pos = new Vec2();
-        rightSmallAxleJoint.getAnchorA(pos);
+        pos = getPaintWorldPoint(rightSmallAxleJoint.getBodyA(), rightSmallAxleJoint.getLocalAnchorA());
         graphics.setTransform(transform);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(rightSmallAxle.getAngle() - (float)Math.PI / 2);
+        graphics.rotate(getPaintAngle(rightSmallAxle) - (float)Math.PI / 2);
         graphics.scale(SCALE, SCALE);
         damperImage.draw(graphics, -23f / 2, 71, 23f, -71);
 
@@ -935,10 +957,10 @@ public class Robot extends GameObject {
         for (int i = 0; i < antenna.length; ++i) {
             ImageUtil partImage = antennaImages[i];
             Body part = antenna[i];
-            Vec2 pos = part.getPosition();
+            Vec2 pos = getPaintPosition(part);
             graphics.setTransform(transform);
             graphics.translate(pos.x, pos.y);
-            graphics.rotate(part.getAngle() - (float)Math.PI / 2);
+            graphics.rotate(getPaintAngle(part) - (float)Math.PI / 2);
             graphics.scale(SCALE, SCALE);
             partImage.draw(graphics, -partImage.getWidth() / 2, partImage.getHeight(), partImage.getWidth(),
                     -partImage.getHeight());
@@ -951,9 +973,9 @@ public class Robot extends GameObject {
         for (int i = armParts.length - 1; i >= 0; --i) {
             Body armPart = armParts[i];
             graphics.setTransform(transform);
-            Vec2 pos = armPart.getPosition();
+            Vec2 pos = getPaintPosition(armPart);
             graphics.translate(pos.x, pos.y);
-            graphics.rotate(armPart.getAngle());
+            graphics.rotate(getPaintAngle(armPart));
             ImageUtil partImage = armImages[i];
             graphics.scale(SCALE, SCALE);
             partImage.draw(graphics, 0, partImage.getHeight() / 2, partImage.getWidth(), -partImage.getHeight());
@@ -967,9 +989,9 @@ public class Robot extends GameObject {
         ImageUtil lowerClawImage = new ImageUtil(images.lowerClaw());
         ImageUtil clawMountImage = new ImageUtil(images.clawMount());
         graphics.setTransform(transform);
-        Vec2 pos = armParts[2].getPosition();
+        Vec2 pos = getPaintPosition(armParts[2]);
         graphics.translate(pos.x, pos.y);
-        graphics.rotate(armParts[2].getAngle());
+        graphics.rotate(getPaintAngle(armParts[2]));
         graphics.scale(SCALE, SCALE);
         graphics.translate(armImages[2].getWidth(), 0);
         graphics.pushTransform();
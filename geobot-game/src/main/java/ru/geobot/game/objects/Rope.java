@@ -24,9 +24,13 @@ public class Rope extends GameObject {
     private float chunkLength;
     private float imageScale;
     private DrawFilter[] filters;
+    private PolygonShape selectionShape = new PolygonShape();
+    private Vec2 point = new Vec2();
+    private AffineTransform transform = new AffineTransform();
 
     Rope(Game game, RopeFactory factory) {
         super(game);
+        setTicking(false);
         image = factory.image;
         this.chunkLength = factory.width / image.getHeight() * image.getWidth();
         this.width = factory.width;
@@ -71,7 +75,11 @@ public class Rope extends GameObject {
             endShape.m_p.y = axisLength;
             Fixture endFixture = parts[i].createFixture(partFixtureDef);
             partDef.position = endFixture.getBody().getWorldPoint(new Vec2(0, axisLength));
+            addHitTestBody(parts[i], factory.width * 2);
         }
+        float selectionHalfWidth = width * 2;
+        selectionShape.set(new Vec2[] { new Vec2(-selectionHalfWidth, 0), new Vec2(selectionHalfWidth, 0),
+                new Vec2(selectionHalfWidth, chunkLength), new Vec2(-selectionHalfWidth, chunkLength) }, 4);
         RevoluteJointDef jointDef = new RevoluteJointDef();
         jointDef.collideConnected = false;
         jointDef.localAnchorA = new Vec2(0, axisLength);
@@ -100,12 +108,9 @@ public class Rope extends GameObject {
 
     @Override
     protected boolean hasPoint(float x, float y) {
-        float halfWidth = width * 2;
+        point.set(x, y);
         for (Body part : parts) {
-            PolygonShape poly = new PolygonShape();
-            poly.set(new Vec2[] { new Vec2(-halfWidth, 0), new Vec2(halfWidth, 0), new Vec2(halfWidth, chunkLength),
-                    new Vec2(-halfWidth, chunkLength) }, 4);
-            if (poly.testPoint(part.getTransform(), new Vec2(x, y))) {
+            if (selectionShape.testPoint(part.getTransform(), point)) {
                 return true;
             }
         }
@@ -116,7 +121,7 @@ public class Rope extends GameObject {
     protected void paint(Graphics graphics) {
         graphics.setColor(color);
         graphics.setStrokeWidth(width);
-        AffineTransform transform = graphics.getTransform();
+        graphics.getTransform(transform);
         outer: for (int i = 0; i < parts.length; i++) {
             if (filters != null) {
                 for (DrawFilter filter : filters) {
@@ -125,9 +130,9 @@ public class Rope extends GameObject {
                     }
                 }
             }
-            Vec2 v = parts[i].getPosition();
+            Vec2 v = getPaintPosition(parts[i]);
             graphics.translate(v.x - width / 2, v.y);
-            graphics.rotate((float)Math.PI / 2 + parts[i].getAngle());
+            graphics.rotate((float)Math.PI / 2 + getPaintAngle(parts[i]));
             graphics.scale(imageScale, imageScale);
             image.draw(graphics);
             graphics.setTransform(transform);
@@ -64,6 +64,7 @@ public class MainMenu extends Menu {
 
     private void startGame() {
         GeobotEntryPoint entryPoint = new GeobotEntryPoint();
+        entryPoint.setInterpolated(menuScreen.isInterpolated());
         entryPoint.setGame(new Cave1Game(entryPoint));
         menuScreen.setInner(entryPoint);
         menuScreen.showGame();
@@ -73,8 +73,8 @@ public abstract class Menu implements EntryPoint {
     }
 
     @Override
-    public boolean idle(long time) {
-        return false;
+    public int idle(long time) {
+        return 0;
     }
 
     @Override
@@ -3,19 +3,18 @@ package ru.geobot.teavm;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import org.teavm.dom.canvas.CanvasRenderingContext2D;
+import ru.geobot.graphics.AbstractGraphics;
 import ru.geobot.graphics.AffineTransform;
 import ru.geobot.graphics.Color;
-import ru.geobot.graphics.Graphics;
+import ru.geobot.graphics.Layer;
 import ru.geobot.graphics.Rectangle;
 
 /**
  *
  * @author Alexey Andreev
  */
-public class CanvasGraphics implements Graphics {
+public class CanvasGraphics extends AbstractGraphics {
     private CanvasRenderingContext2D context;
-    private AffineTransform transform = AffineTransform.identity();
-    private Deque<AffineTransform> transformStack = new ArrayDeque<>();
     private Deque<ClipRegion> clipStack = new ArrayDeque<>();
 
     private static class ClipRegion {
@@ -46,55 +45,10 @@ public class CanvasGraphics implements Graphics {
     }
 
     @Override
-    public void setTransform(AffineTransform transform) {
-        this.transform = transform.copy();
-        updateTransform();
-    }
-
-    private void updateTransform() {
+    protected void transformChanged() {
         context.setTransform(transform.a, transform.b, transform.c, transform.d, transform.e, transform.f);
     }
 
-    @Override
-    public AffineTransform getTransform() {
-        return transform.copy();
-    }
-
-    @Override
-    public void scale(float x, float y) {
-        transform.scale(x, y);
-        updateTransform();
-    }
-
-    @Override
-    public void translate(float x, float y) {
-        transform.translate(x, y);
-        updateTransform();
-    }
-
-    @Override
-    public void rotate(float angle) {
-        transform.rotate(angle);
-        updateTransform();
-    }
-
-    @Override
-    public void transform(AffineTransform transform) {
-        transform.transform(transform);
-        updateTransform();
-    }
-
-    @Override
-    public void pushTransform() {
-        transformStack.push(transform.copy());
-    }
-
-    @Override
-    public void popTransform() {
-        transform = transformStack.pop();
-        updateTransform();
-    }
-
     @Override
     public void fillRectangle(float x, float y, float w, float h) {
         context.fillRect(x, y, w, h);
@@ -191,7 +145,12 @@ public class CanvasGraphics implements Graphics {
             context.setTransform(t.a, t.b, t.c, t.d, t.e, t.f);
             applyClip(region.rect);
         }
-        updateTransform();*/
+        transformChanged();*/
+    }
+
+    @Override
+    public Layer createLayer(int width, int height, boolean opaque) {
+        return null;
     }
 
     public CanvasRenderingContext2D getContext() {
@@ -2,7 +2,7 @@ package ru.geobot.teavm;
 
 import org.teavm.dom.canvas.CanvasRenderingContext2D;
 import org.teavm.dom.html.HTMLImageElement;
-import ru.geobot.graphics.AffineTransform;
+import ru.geobot.graphics.BatchingGraphics;
 import ru.geobot.graphics.Graphics;
 import ru.geobot.resources.Image;
 
@@ -23,8 +23,11 @@ public class CanvasImage implements Image {
 
     @Override
     public void draw(Graphics graphics) {
-        AffineTransform transformation = graphics.getTransform();
-        double factor = Math.sqrt(Math.abs(transformation.getDeterminant()));
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, 1);
+            return;
+        }
+        double factor = Math.sqrt(Math.abs(((CanvasGraphics)graphics).getTransformDeterminant()));
         int index = 0;
         int intFactor = 1;
         while (index < scaledImages.length - 1 && factor < 0.5) {
@@ -34,15 +37,20 @@ public class CanvasImage implements Image {
         }
         HTMLImageElement original = scaledImages[0];
         HTMLImageElement scaled = scaledImages[index];
+        graphics.pushTransform();
         graphics.scale(intFactor, intFactor);
         graphics.scale(original.getWidth() / (float)(scaled.getWidth() * intFactor),
                 original.getHeight() / (float)(scaled.getHeight() * intFactor));
         ((CanvasGraphics)graphics).getContext().drawImage(scaled, 0, 0);
-        graphics.setTransform(transformation);
+        graphics.popTransform();
     }
 
     @Override
     public void draw(Graphics graphics, float alpha) {
+        if (graphics instanceof BatchingGraphics) {
+            ((BatchingGraphics)graphics).drawImage(this, alpha);
+            return;
+        }
         CanvasRenderingContext2D context = ((CanvasGraphics)graphics).getContext();
         double oldAlpha = context.getGlobalAlpha();
         context.setGlobalAlpha(alpha);
@@ -1,23 +1,36 @@
 package ru.geobot.teavm;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.common.Vec2;
 import ru.geobot.resources.PolygonalBodyFactory;
 
 /**
+ * <p>Keeps shapes created for each scale like the desktop factory does, and drops all of them when more than
+ * {@link #MAX_SCALES} scales are asked for.</p>
  *
  * @author Alexey Andreev
  */
 public class HtmlPolygonalBodyFactory implements PolygonalBodyFactory {
+    /**
+     * <p>The largest number of scales whose shapes are kept.</p>
+     */
+    public static final int MAX_SCALES = 8;
     private float[][] prototype;
+    private final Map<Float, PolygonShape[]> scaledShapes = new HashMap<>();
 
     public HtmlPolygonalBodyFactory(float[][] prototype) {
         this.prototype = prototype;
     }
 
     @Override
-    public PolygonShape[] create(float scale) {
-        PolygonShape[] result = new PolygonShape[prototype.length];
+    public synchronized PolygonShape[] create(float scale) {
+        PolygonShape[] result = scaledShapes.get(scale);
+        if (result != null) {
+            return result;
+        }
+        result = new PolygonShape[prototype.length];
         for (int i = 0; i < result.length; ++i) {
             PolygonShape copy = new PolygonShape();
             result[i] = copy;
@@ -28,6 +41,15 @@ public class HtmlPolygonalBodyFactory implements PolygonalBodyFactory {
             }
             copy.set(verticesCopy, verticesCopy.length);
         }
+        if (scaledShapes.size() >= MAX_SCALES) {
+            scaledShapes.clear();
+        }
+        scaledShapes.put(scale, result);
         return result;
     }
+
+    @Override
+    public float[][] getVertices() {
+        return prototype;
+    }
 }